@@ -0,0 +1,416 @@
+package puzzles.batch;
+
+import puzzles.chess.model.ChessConfig;
+import puzzles.common.solver.Configuration;
+import puzzles.common.solver.Solver;
+import puzzles.hoppers.model.HoppersConfig;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Solves a whole directory of Hoppers and Chess puzzle files, or the files
+ * listed in a manifest, in one JVM, so the JIT only warms up once instead
+ * of once per file. Files are solved concurrently on a fixed pool of
+ * workers. Each solve can be given a time limit and a memory cap; a solve
+ * that goes over either is cancelled and the next file is started. One
+ * line per file is written to a CSV results file as soon as the file is
+ * done.
+ * <p>
+ * Every worker shares one heap, so the memory cap is enforced on an
+ * estimate: the distinct configurations seen so far times a rough size
+ * per configuration, checked after every BFS layer. A solve that still
+ * runs the heap out is reported as over memory.
+ * <p>
+ * A manifest is a text file with one puzzle file per line, relative to
+ * the manifest's directory; blank lines and lines starting with # are
+ * skipped. A {@link PuzzlePack} made by {@link PackConverter} can be
+ * solved instead, which saves parsing thousands of small text files.
+ *
+ * @author Nam Huynh
+ */
+
+public class BatchSolver {
+    /**
+     * rough bytes held per distinct Hoppers configuration: the board plus its visited set entry
+     */
+    private static final int HOPPERS_STATE_BYTES = 176;
+    /**
+     * rough bytes held per distinct Chess configuration: the board plus its visited set entry
+     */
+    private static final int CHESS_STATE_BYTES = 320;
+    /**
+     * results file used when none is given
+     */
+    private static final String DEFAULT_RESULTS = "batch-results.csv";
+
+    /**
+     * How a file's solve ended
+     */
+    public enum Status {SOLVED, NO_SOLUTION, TIMEOUT, MEMORY, ERROR}
+
+    /**
+     * The outcome of solving one file
+     * @param file the puzzle file
+     * @param status how the solve ended
+     * @param moves moves in the solution, -1 unless solved
+     * @param totalConfigs configurations generated
+     * @param uniqueConfigs distinct configurations seen
+     * @param millis wall time of the solve
+     * @param message what went wrong, empty unless the status is ERROR
+     */
+    public record Result(Path file, Status status, int moves, long totalConfigs, long uniqueConfigs,
+                         double millis, String message) {}
+
+    /**
+     * number of files solved at once
+     */
+    private final int workers;
+    /**
+     * longest a solve may run in milliseconds, 0 for no limit
+     */
+    private final long timeoutMillis;
+    /**
+     * most bytes a solve may hold by estimate, 0 for no limit
+     */
+    private final long memoryCap;
+    /**
+     * cancels solves that run past their time limit
+     */
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "batch-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Create a batch solver
+     * @param workers number of files solved at once
+     * @param timeoutMillis longest a solve may run in milliseconds, 0 for no limit
+     * @param memoryCap most bytes a solve may hold by estimate, 0 for no limit
+     */
+    public BatchSolver(int workers, long timeoutMillis, long memoryCap) {
+        this.workers = workers;
+        this.timeoutMillis = timeoutMillis;
+        this.memoryCap = memoryCap;
+    }
+
+    /**
+     * Load a puzzle file
+     * @param file the puzzle file
+     * @return the starting configuration
+     * @throws IOException if the file cannot be read
+     */
+    static Configuration load(Path file) throws IOException {
+        return isChess(file) ? new ChessConfig(file.toString()) : new HoppersConfig(file.toString());
+    }
+
+    /**
+     * Tell which puzzle a file holds. A file under a directory named after
+     * a puzzle is that puzzle; otherwise a board with water or green frogs
+     * is Hoppers and anything else is Chess.
+     * @param file the puzzle file
+     * @return whether it is a Chess board rather than a Hoppers board
+     * @throws IOException if the file cannot be read
+     */
+    static boolean isChess(Path file) throws IOException {
+        String name = file.toString().toLowerCase(Locale.ROOT);
+        if (name.contains("chess")) {
+            return true;
+        }
+        if (name.contains("hoppers")) {
+            return false;
+        }
+        List<String> lines = Files.readAllLines(file);
+        for (int i = 1; i < lines.size(); i++) {
+            if (lines.get(i).indexOf(HoppersConfig.WATER) >= 0 || lines.get(i).indexOf(HoppersConfig.GREEN_FROG) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * List the puzzle files to solve
+     * @param source a directory, searched for .txt files in every subdirectory, or a manifest
+     * @return the puzzle files, in name order for a directory and in listed order for a manifest
+     * @throws IOException if the directory or manifest cannot be read
+     */
+    public static List<Path> list(Path source) throws IOException {
+        if (Files.isDirectory(source)) {
+            try (Stream<Path> files = Files.walk(source)) {
+                return files.filter(Files::isRegularFile)
+                        .filter(file -> file.getFileName().toString().endsWith(".txt"))
+                        .sorted()
+                        .toList();
+            }
+        }
+        Path base = source.toAbsolutePath().getParent();
+        List<Path> files = new ArrayList<>();
+        for (String line : Files.readAllLines(source)) {
+            line = line.strip();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                files.add(base.resolve(line));
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Loads the board of one solve
+     */
+    private interface Loader {
+        /**
+         * @return the starting configuration
+         * @throws IOException if the board cannot be read
+         */
+        Configuration load() throws IOException;
+    }
+
+    /**
+     * Solve one file, stopping early if it runs past the time limit or the memory cap
+     * @param file the puzzle file
+     * @return how the solve went
+     */
+    public Result solve(Path file) {
+        return solve(file, () -> load(file));
+    }
+
+    /**
+     * Solve one board of a puzzle pack, stopping early if it runs past the time limit or the memory cap
+     * @param pack the pack
+     * @param index the board's number in the pack
+     * @return how the solve went, under the board's name in the pack
+     */
+    public Result solve(PuzzlePack pack, int index) {
+        return solve(Path.of(pack.name(index)), () -> pack.load(index));
+    }
+
+    /**
+     * Solve one board, stopping early if it runs past the time limit or the memory cap
+     * @param file what the result is reported under
+     * @param loader loads the board; its time counts towards the solve
+     * @return how the solve went
+     */
+    private Result solve(Path file, Loader loader) {
+        Solver solver = new Solver();
+        // set before the solver is cancelled, so the cancellation can be told apart
+        AtomicReference<Status> stopped = new AtomicReference<>();
+        long begin = System.nanoTime();
+        ScheduledFuture<?> timer = null;
+        try {
+            Configuration start = loader.load();
+            if (memoryCap > 0) {
+                long stateBytes = start instanceof ChessConfig ? CHESS_STATE_BYTES : HOPPERS_STATE_BYTES;
+                solver.setProgress(unique -> {
+                    if (unique * stateBytes > memoryCap) {
+                        stopped.compareAndSet(null, Status.MEMORY);
+                        solver.cancel();
+                    }
+                });
+            }
+            if (timeoutMillis > 0) {
+                timer = watchdog.schedule(() -> {
+                    stopped.compareAndSet(null, Status.TIMEOUT);
+                    solver.cancel();
+                }, timeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            List<Configuration> path = solver.solve(start);
+            return result(file, path.isEmpty() ? Status.NO_SOLUTION : Status.SOLVED, solver, begin, "");
+        } catch (CancellationException ce) {
+            return result(file, stopped.get(), solver, begin, "");
+        } catch (OutOfMemoryError oom) {
+            return result(file, Status.MEMORY, solver, begin, "");
+        } catch (IOException | RuntimeException e) {
+            return result(file, Status.ERROR, solver, begin, e.getClass().getSimpleName() + ": " + e.getMessage());
+        } finally {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * @param file the puzzle file
+     * @param status how the solve ended
+     * @param solver the solver that ran it
+     * @param begin nanoTime when the solve started
+     * @param message what went wrong, empty unless the status is ERROR
+     * @return the result of the solve
+     */
+    private static Result result(Path file, Status status, Solver solver, long begin, String message) {
+        int moves = status == Status.SOLVED ? solver.getMetrics().getPathLength() : -1;
+        return new Result(file, status, moves, solver.getTotalConfigs(), solver.getUniqueConfigs(),
+                (System.nanoTime() - begin) / 1e6, message);
+    }
+
+    /**
+     * Solve every file on the worker pool, writing each result as it finishes
+     * @param files the puzzle files
+     * @param out where the CSV lines go, after a header line
+     * @return every result, in the order the files were given
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public List<Result> run(List<Path> files, PrintWriter out) throws InterruptedException {
+        List<Callable<Result>> solves = new ArrayList<>();
+        for (Path file : files) {
+            solves.add(() -> solve(file));
+        }
+        return runAll(solves, out);
+    }
+
+    /**
+     * Solve every board of a puzzle pack on the worker pool, writing each result as it finishes
+     * @param pack the pack
+     * @param out where the CSV lines go, after a header line
+     * @return every result, in the order of the pack
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public List<Result> run(PuzzlePack pack, PrintWriter out) throws InterruptedException {
+        List<Callable<Result>> solves = new ArrayList<>();
+        for (int i = 0; i < pack.size(); i++) {
+            int index = i;
+            solves.add(() -> solve(pack, index));
+        }
+        return runAll(solves, out);
+    }
+
+    /**
+     * Run solves on the worker pool, writing each result as it finishes
+     * @param solves the solves
+     * @param out where the CSV lines go, after a header line
+     * @return every result, in the order the solves were given
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    private List<Result> runAll(List<Callable<Result>> solves, PrintWriter out) throws InterruptedException {
+        out.println("file,status,moves,total_configs,unique_configs,millis,message");
+        out.flush();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Result>> pending = new ArrayList<>();
+            for (Callable<Result> solve : solves) {
+                pending.add(pool.submit(() -> {
+                    Result result = solve.call();
+                    synchronized (out) {
+                        out.println(csv(result));
+                        out.flush();
+                    }
+                    return result;
+                }));
+            }
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> future : pending) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException ee) {
+                    throw new IllegalStateException(ee.getCause());
+                }
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @param result the result of one solve
+     * @return the result as a CSV line
+     */
+    private static String csv(Result result) {
+        return String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%.1f,%s", quote(result.file().toString()),
+                result.status(), result.moves(), result.totalConfigs(), result.uniqueConfigs(),
+                result.millis(), quote(result.message()));
+    }
+
+    /**
+     * @param text a CSV field
+     * @return the field, quoted if it holds a comma, quote or line break
+     */
+    private static String quote(String text) {
+        if (text.contains(",") || text.contains("\"") || text.contains("\n")) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+
+    /**
+     * Solve a batch of puzzle files
+     * @param args options, then the directory, manifest or puzzle pack
+     */
+    public static void main(String[] args) {
+        int workers = Runtime.getRuntime().availableProcessors();
+        long timeoutMillis = 0;
+        long memoryCap = 0;
+        int warmup = 0;
+        String output = DEFAULT_RESULTS;
+        int i = 0;
+        try {
+            for (; i + 1 < args.length && args[i].startsWith("-"); i += 2) {
+                switch (args[i]) {
+                    case "-j" -> workers = Integer.parseInt(args[i + 1]);
+                    case "-t" -> timeoutMillis = (long) (Double.parseDouble(args[i + 1]) * 1000);
+                    case "-m" -> memoryCap = Long.parseLong(args[i + 1]) << 20;
+                    case "-w" -> warmup = Integer.parseInt(args[i + 1]);
+                    case "-o" -> output = args[i + 1];
+                    default -> throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            i = args.length;
+        }
+        if (i != args.length - 1 || args[i].startsWith("-") || workers < 1) {
+            System.out.println("Usage: java BatchSolver [-j workers] [-t seconds] [-m megabytes] [-w warmup files] "
+                    + "[-o results.csv] directory|manifest|pack" + PackConverter.EXTENSION);
+            return;
+        }
+
+        BatchSolver batch = new BatchSolver(workers, timeoutMillis, memoryCap);
+        try {
+            Path source = Path.of(args[i]);
+            PuzzlePack pack = null;
+            List<Path> files = List.of();
+            if (source.toString().endsWith(PackConverter.EXTENSION)) {
+                pack = PuzzlePack.open(source);
+            } else {
+                files = list(source);
+            }
+            if (memoryCap > 0 && memoryCap * workers > Runtime.getRuntime().maxMemory()) {
+                System.out.println("Warning: " + workers + " workers at " + (memoryCap >> 20)
+                        + " MB each may not fit in the " + (Runtime.getRuntime().maxMemory() >> 20) + " MB heap");
+            }
+            // untimed solves of the first boards so the timed ones run on compiled code
+            for (int w = 0; w < warmup; w++) {
+                if (pack != null && w < pack.size()) {
+                    batch.solve(pack, w);
+                } else if (pack == null && w < files.size()) {
+                    batch.solve(files.get(w));
+                }
+            }
+            long begin = System.nanoTime();
+            List<Result> results;
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Path.of(output)))) {
+                results = pack != null ? batch.run(pack, out) : batch.run(files, out);
+            }
+            int[] counts = new int[Status.values().length];
+            for (Result result : results) {
+                counts[result.status().ordinal()] += 1;
+            }
+            System.out.printf("%d files in %.1f s on %d workers: %d solved, %d no solution, %d timed out, "
+                            + "%d over memory, %d failed%n", results.size(), (System.nanoTime() - begin) / 1e9,
+                    workers, counts[0], counts[1], counts[2], counts[3], counts[4]);
+            System.out.println("Results written to " + output);
+        } catch (IOException ioe) {
+            System.out.println(ioe.getMessage());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
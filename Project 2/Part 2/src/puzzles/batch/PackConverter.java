@@ -0,0 +1,87 @@
+package puzzles.batch;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts Hoppers and Chess puzzle files from the text format into one
+ * {@link PuzzlePack}. Takes a directory or a manifest, found the same way
+ * as {@link BatchSolver} finds them, and names every board in the pack by
+ * its file's path relative to the directory or manifest.
+ * <p>
+ * After writing, every board is loaded back from the pack and compared
+ * with the same file loaded from text.
+ *
+ * @author Nam Huynh
+ */
+
+public class PackConverter {
+    /**
+     * file extension of a puzzle pack
+     */
+    public static final String EXTENSION = ".pzp";
+
+    /**
+     * Read every puzzle file into boards for a pack
+     * @param source a directory or manifest
+     * @return the boards, in the order the files are listed
+     * @throws IOException if a file cannot be read or is not a board
+     */
+    public static List<PuzzlePack.Board> read(Path source) throws IOException {
+        Path base = Files.isDirectory(source) ? source : source.toAbsolutePath().getParent();
+        List<PuzzlePack.Board> boards = new ArrayList<>();
+        for (Path file : BatchSolver.list(source)) {
+            String name = base.toAbsolutePath().relativize(file.toAbsolutePath()).toString();
+            boards.add(PuzzlePack.read(file, name, BatchSolver.isChess(file)));
+        }
+        return boards;
+    }
+
+    /**
+     * Check every board in a pack loads the same as its text file
+     * @param pack the pack, just written
+     * @param files the text files, in pack order
+     * @return the number of the first board that differs, or -1 if they all match
+     * @throws IOException if a board cannot be read
+     */
+    public static int verify(PuzzlePack pack, List<Path> files) throws IOException {
+        for (int i = 0; i < pack.size(); i++) {
+            if (!pack.load(i).equals(BatchSolver.load(files.get(i)))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Convert puzzle files to a pack
+     * @param args the directory or manifest, then the pack to write
+     */
+    public static void main(String[] args) {
+        if (args.length != 2 || !args[1].endsWith(EXTENSION)) {
+            System.out.println("Usage: java PackConverter directory|manifest pack" + EXTENSION);
+            return;
+        }
+        Path source = Path.of(args[0]);
+        Path target = Path.of(args[1]);
+        try {
+            List<PuzzlePack.Board> boards = read(source);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target))) {
+                PuzzlePack.write(boards, out);
+            }
+            int mismatch = verify(PuzzlePack.open(target), BatchSolver.list(source));
+            if (mismatch >= 0) {
+                System.out.println("Board " + boards.get(mismatch).name() + " does not load the same from the pack");
+                return;
+            }
+            System.out.println(boards.size() + " boards written to " + target + " (" + Files.size(target) + " bytes)");
+        } catch (IOException ioe) {
+            System.out.println(ioe.getMessage());
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package puzzles.batch;
+
+import puzzles.chess.model.ChessConfig;
+import puzzles.common.solver.Configuration;
+import puzzles.hoppers.model.HoppersConfig;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A binary file holding many Hoppers and Chess boards, read through a
+ * memory map so boards are built straight from the mapped bytes, without
+ * reading lines or splitting strings.
+ * <p>
+ * All numbers are big-endian. The file starts with a fixed header:
+ * <pre>
+ *   0  int    magic, the bytes "PZPK"
+ *   4  short  format version, 1
+ *   6  short  reserved, 0
+ *   8  int    number of boards, n
+ *  12  int    reserved, 0
+ *  16  int[n] offset of each board's record from the start of the file
+ * </pre>
+ * and each record is:
+ * <pre>
+ *   0  byte    puzzle, 0 for Hoppers and 1 for Chess
+ *   1  byte    rows, 1 to 255
+ *   2  byte    cols, 1 to 255
+ *   3  short   length of the name in bytes, m
+ *   5  byte[m] the board's name in UTF-8, usually the file it came from
+ *   5+m        the cells in row-major order, two per byte, high nibble first
+ * </pre>
+ * A cell is stored as its position in the puzzle's alphabet:
+ * {@link #HOPPERS_CELLS} or {@link #CHESS_CELLS}.
+ * <p>
+ * A pack is safe to read from several threads at once.
+ *
+ * @author Nam Huynh
+ */
+
+public class PuzzlePack {
+    /**
+     * the bytes "PZPK", the first four bytes of every pack
+     */
+    public static final int MAGIC = 0x505A504B;
+    /**
+     * the format version written and read
+     */
+    public static final short VERSION = 1;
+    /**
+     * bytes in the fixed header, before the offsets
+     */
+    public static final int HEADER_BYTES = 16;
+    /**
+     * bytes in a record before its name
+     */
+    private static final int RECORD_HEADER_BYTES = 5;
+    /**
+     * the puzzle byte of a Hoppers record
+     */
+    public static final byte HOPPERS = 0;
+    /**
+     * the puzzle byte of a Chess record
+     */
+    public static final byte CHESS = 1;
+    /**
+     * the Hoppers cells, each stored as its index here
+     */
+    public static final String HOPPERS_CELLS = "" + HoppersConfig.LILY_PAD + HoppersConfig.WATER
+            + HoppersConfig.GREEN_FROG + HoppersConfig.RED_FROG;
+    /**
+     * the Chess cells, each stored as its index here
+     */
+    public static final String CHESS_CELLS = ".KQRBNP";
+
+    /**
+     * the mapped file
+     */
+    private final ByteBuffer buffer;
+    /**
+     * number of boards in the pack
+     */
+    private final int size;
+
+    /**
+     * @param buffer the mapped file
+     * @param size number of boards in the pack
+     */
+    private PuzzlePack(ByteBuffer buffer, int size) {
+        this.buffer = buffer;
+        this.size = size;
+    }
+
+    /**
+     * Map a pack into memory and check its header and offsets
+     * @param file the pack
+     * @return the pack, ready to read
+     * @throws IOException if the file cannot be read or is not a pack this version can read
+     */
+    public static PuzzlePack open(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not a puzzle pack: " + file);
+            }
+            // the mapping stays valid once the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a puzzle pack: " + file);
+        }
+        if (buffer.getShort(4) != VERSION) {
+            throw new IOException("Unsupported puzzle pack version " + buffer.getShort(4) + ": " + file);
+        }
+        int size = buffer.getInt(8);
+        if (size < 0 || HEADER_BYTES + (long) size * Integer.BYTES > buffer.limit()) {
+            throw new IOException("Corrupt puzzle pack header: " + file);
+        }
+        PuzzlePack pack = new PuzzlePack(buffer, size);
+        for (int i = 0; i < size; i++) {
+            int offset = pack.offset(i);
+            if (offset < HEADER_BYTES || (long) offset + RECORD_HEADER_BYTES > buffer.limit()
+                    || (long) offset + RECORD_HEADER_BYTES + pack.nameLength(offset) + pack.cellBytes(offset)
+                    > buffer.limit()) {
+                throw new IOException("Corrupt puzzle pack record " + i + ": " + file);
+            }
+        }
+        return pack;
+    }
+
+    /**
+     * @return the number of boards in the pack
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index a board number
+     * @return where the board's record starts
+     */
+    private int offset(int index) {
+        return buffer.getInt(HEADER_BYTES + index * Integer.BYTES);
+    }
+
+    /**
+     * @param offset where a record starts
+     * @return the length of the record's name in bytes
+     */
+    private int nameLength(int offset) {
+        return Short.toUnsignedInt(buffer.getShort(offset + 3));
+    }
+
+    /**
+     * @param offset where a record starts
+     * @return the bytes the record's cells take
+     */
+    private int cellBytes(int offset) {
+        return (rows(offset) * cols(offset) + 1) / 2;
+    }
+
+    /**
+     * @param offset where a record starts
+     * @return the record's row count
+     */
+    private int rows(int offset) {
+        return Byte.toUnsignedInt(buffer.get(offset + 1));
+    }
+
+    /**
+     * @param offset where a record starts
+     * @return the record's column count
+     */
+    private int cols(int offset) {
+        return Byte.toUnsignedInt(buffer.get(offset + 2));
+    }
+
+    /**
+     * @param index a board number
+     * @return whether the board is a Chess board rather than a Hoppers board
+     */
+    public boolean isChess(int index) {
+        return buffer.get(offset(index)) == CHESS;
+    }
+
+    /**
+     * @param index a board number
+     * @return the board's name, usually the file it was converted from
+     */
+    public String name(int index) {
+        int offset = offset(index);
+        byte[] name = new byte[nameLength(offset)];
+        buffer.get(offset + RECORD_HEADER_BYTES, name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Build a board straight from its packed cells
+     * @param index a board number
+     * @return the board's starting configuration
+     * @throws IOException if the record holds a cell or puzzle this version does not know
+     */
+    public Configuration load(int index) throws IOException {
+        int offset = offset(index);
+        int rows = rows(offset);
+        int cols = cols(offset);
+        byte puzzle = buffer.get(offset);
+        String alphabet = puzzle == CHESS ? CHESS_CELLS : HOPPERS_CELLS;
+        if (puzzle != CHESS && puzzle != HOPPERS) {
+            throw new IOException("Unknown puzzle " + puzzle + " in record " + index);
+        }
+        int start = offset + RECORD_HEADER_BYTES + nameLength(offset);
+        byte[] cells = new byte[rows * cols];
+        for (int cell = 0; cell < cells.length; cell++) {
+            int packed = buffer.get(start + cell / 2);
+            int code = (cell & 1) == 0 ? packed >>> 4 & 0xF : packed & 0xF;
+            if (code >= alphabet.length()) {
+                throw new IOException("Unknown cell " + code + " in record " + index);
+            }
+            cells[cell] = (byte) alphabet.charAt(code);
+        }
+        try {
+            return puzzle == CHESS ? new ChessConfig(rows, cols, cells) : new HoppersConfig(rows, cols, cells);
+        } catch (IllegalArgumentException iae) {
+            throw new IOException(iae.getMessage() + " in record " + index);
+        }
+    }
+
+    /**
+     * One board to be written to a pack
+     * @param name the board's name, at most 65535 bytes in UTF-8
+     * @param chess whether it is a Chess board rather than a Hoppers board
+     * @param rows the board's row count
+     * @param cols the board's column count
+     * @param cells one file char per cell in row-major order
+     */
+    public record Board(String name, boolean chess, int rows, int cols, byte[] cells) {}
+
+    /**
+     * Read a board in the text format the puzzles are loaded from
+     * @param file the text file
+     * @param name what to call the board in the pack
+     * @param chess whether it is a Chess board rather than a Hoppers board
+     * @return the board
+     * @throws IOException if the file cannot be read or is not a board
+     */
+    public static Board read(Path file, String name, boolean chess) throws IOException {
+        List<String> lines = Files.readAllLines(file);
+        try {
+            String[] size = lines.get(0).strip().split("\\s+");
+            int rows = Integer.parseInt(size[0]);
+            int cols = Integer.parseInt(size[1]);
+            byte[] cells = new byte[rows * cols];
+            for (int r = 0; r < rows; r++) {
+                String[] line = lines.get(r + 1).strip().split("\\s+");
+                for (int c = 0; c < cols; c++) {
+                    cells[r * cols + c] = (byte) line[c].charAt(0);
+                }
+            }
+            return new Board(name, chess, rows, cols, cells);
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            throw new IOException("Malformed board: " + file);
+        }
+    }
+
+    /**
+     * Write boards to a pack
+     * @param boards the boards, in the order they are numbered in the pack
+     * @param out where the pack goes; not closed
+     * @throws IOException if a board cannot be packed or the stream fails
+     */
+    public static void write(List<Board> boards, OutputStream out) throws IOException {
+        List<byte[]> names = new ArrayList<>();
+        int offset = HEADER_BYTES + boards.size() * Integer.BYTES;
+        List<Integer> offsets = new ArrayList<>();
+        for (Board board : boards) {
+            if (board.rows() < 1 || board.rows() > 255 || board.cols() < 1 || board.cols() > 255) {
+                throw new IOException("Board size out of range: " + board.name());
+            }
+            byte[] name = board.name().getBytes(StandardCharsets.UTF_8);
+            if (name.length > 0xFFFF) {
+                throw new IOException("Board name too long: " + board.name());
+            }
+            names.add(name);
+            offsets.add(offset);
+            offset += RECORD_HEADER_BYTES + name.length + (board.rows() * board.cols() + 1) / 2;
+            if (offset < 0) {
+                throw new IOException("Puzzle pack larger than 2 GB");
+            }
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeShort(0);
+        data.writeInt(boards.size());
+        data.writeInt(0);
+        for (int recordOffset : offsets) {
+            data.writeInt(recordOffset);
+        }
+        for (int i = 0; i < boards.size(); i++) {
+            Board board = boards.get(i);
+            String alphabet = board.chess() ? CHESS_CELLS : HOPPERS_CELLS;
+            data.writeByte(board.chess() ? CHESS : HOPPERS);
+            data.writeByte(board.rows());
+            data.writeByte(board.cols());
+            data.writeShort(names.get(i).length);
+            data.write(names.get(i));
+            int cells = board.rows() * board.cols();
+            for (int cell = 0; cell < cells; cell += 2) {
+                int high = code(alphabet, board.cells()[cell], board);
+                int low = cell + 1 < cells ? code(alphabet, board.cells()[cell + 1], board) : 0;
+                data.writeByte(high << 4 | low);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * @param alphabet the puzzle's cells
+     * @param cell a file char
+     * @param board the board it is from, for the error message
+     * @return the cell's index in the alphabet
+     * @throws IOException if the puzzle has no such cell
+     */
+    private static int code(String alphabet, byte cell, Board board) throws IOException {
+        int code = alphabet.indexOf(cell);
+        if (code < 0) {
+            throw new IOException("Cannot pack cell " + (char) cell + ": " + board.name());
+        }
+        return code;
+    }
+}
@@ -0,0 +1,81 @@
+package puzzles.bench;
+
+import puzzles.chess.model.ChessConfig;
+import puzzles.common.solver.Configuration;
+
+import java.io.IOException;
+
+/**
+ * Perft-style benchmark for the chess move generator. Walks every capture
+ * sequence to a fixed depth without removing duplicates and reports how
+ * many neighbors getNeighbors() generates per second.
+ *
+ * @author Alex Eng
+ */
+
+public class ChessPerft {
+    /**
+     * depth used when none is given
+     */
+    private static final int DEFAULT_DEPTH = 5;
+    /**
+     * number of untimed walks per file so the JIT can warm up
+     */
+    private static final int WARMUP_RUNS = 2;
+    /**
+     * number of timed walks per file
+     */
+    private static final int TIMED_RUNS = 3;
+
+    /**
+     * Count every neighbor generated below a configuration
+     * @param config the configuration to expand
+     * @param depth how many more captures to follow
+     * @return number of neighbors generated
+     */
+    static long perft(Configuration config, int depth) {
+        if (depth == 0) {
+            return 0;
+        }
+        long count = 0;
+        for (Configuration neighbor : config.getNeighbors()) {
+            count += 1 + perft(neighbor, depth - 1);
+        }
+        return count;
+    }
+
+    /**
+     * Run perft on each file given on the command line
+     * @param args an optional "-d depth" followed by the chess puzzle files
+     */
+    public static void main(String[] args) {
+        int depth = DEFAULT_DEPTH;
+        int first = 0;
+        if (args.length >= 2 && args[0].equals("-d")) {
+            depth = Integer.parseInt(args[1]);
+            first = 2;
+        }
+        if (args.length == first) {
+            System.out.println("Usage: java ChessPerft [-d depth] filename...");
+            return;
+        }
+        for (int i = first; i < args.length; i++) {
+            try {
+                ChessConfig start = new ChessConfig(args[i]);
+                for (int run = 0; run < WARMUP_RUNS; run++) {
+                    perft(start, depth);
+                }
+                long nodes = 0;
+                long begin = System.nanoTime();
+                for (int run = 0; run < TIMED_RUNS; run++) {
+                    nodes += perft(start, depth);
+                }
+                long elapsed = System.nanoTime() - begin;
+                System.out.printf("%s depth %d: %d neighbors, %.0f neighbors/sec%n",
+                        args[i], depth, nodes / TIMED_RUNS, nodes / (elapsed / 1e9));
+            } catch (IOException ioe) {
+                System.out.println(ioe.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package puzzles.bench;
+
+import puzzles.clock.Clock;
+import puzzles.common.solver.AStarSolver;
+import puzzles.common.solver.Configuration;
+import puzzles.common.solver.Solver;
+import puzzles.common.solver.SolverMetrics;
+import puzzles.strings.Strings;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Stress test for the Clock and Strings configurations. Checks that asking
+ * one configuration for its neighbors over and over hands back the same
+ * list without allocating, then solves clocks with millions of hours and
+ * strings of 20 letters and more, printing the time, the configurations
+ * seen and the estimated bytes per stored configuration of each solve.
+ *
+ * @author Nam Huynh
+ */
+
+public class ConfigStress {
+    /**
+     * clock sizes solved when none are given
+     */
+    private static final int[] DEFAULT_HOURS = {1_000_000, 2_000_000, 4_000_000};
+    /**
+     * calls made on one configuration by the repeated getNeighbors check
+     */
+    private static final int REPEATS = 1_000_000;
+    /**
+     * the long words solved, each towards a copy with a few letters moved
+     * and towards a copy with every letter moved
+     */
+    private static final String[] WORDS = {
+            "THEQUICKBROWNFOXJUMPSOVER",
+            "PACKMYBOXWITHFIVEDOZENJUGS",
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZ"
+    };
+
+    /**
+     * results are folded in here so no measured call is dead code
+     */
+    private static long sink;
+
+    /**
+     * Bytes allocated so far by the current thread, or -1 if the JVM does
+     * not track allocations per thread
+     * @return allocated bytes
+     */
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemoryEnabled()) {
+            return threads.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    /**
+     * Call getNeighbors on one configuration many times and check every
+     * call returns the same collection
+     * @param name what is being checked
+     * @param config the configuration
+     */
+    private static void repeated(String name, Configuration config) {
+        Collection<Configuration> first = config.getNeighbors();
+        int size = first.size();
+        boolean same = true;
+        long allocated = allocatedBytes();
+        long begin = System.nanoTime();
+        for (int i = 0; i < REPEATS; i++) {
+            Collection<Configuration> again = config.getNeighbors();
+            same &= again == first;
+            sink += again.size();
+        }
+        long elapsed = System.nanoTime() - begin;
+        allocated = allocatedBytes() - allocated;
+        System.out.printf("  %-28s %d neighbors, %s after %d calls, %.1f ns/call, %.2f bytes/call%n",
+                name, size, same && first.size() == size ? "unchanged" : "CHANGED", REPEATS,
+                (double) elapsed / REPEATS, (double) allocated / REPEATS);
+    }
+
+    /**
+     * Solve once and print what the solve did
+     * @param name what is being solved
+     * @param solve runs the solve and returns its metrics
+     */
+    private static void solve(String name, Supplier<SolverMetrics> solve) {
+        try {
+            SolverMetrics metrics = solve.get();
+            System.out.printf("  %-28s %-18s %9.1f ms %9d moves %10d expanded %10d seen %8.1f bytes/state%n",
+                    name, metrics.getAlgorithm(), metrics.getTotalNanos() / 1e6, metrics.getPathLength(),
+                    metrics.getExpansions(), metrics.getPeakVisited(), metrics.getBytesPerState());
+        } catch (OutOfMemoryError oom) {
+            System.out.printf("  %-28s out of memory%n", name);
+        }
+    }
+
+    /**
+     * @param word an uppercase word
+     * @param random decides which letters move and how far
+     * @param moved how many letters to move
+     * @return the word with some letters moved one or two places along the alphabet
+     */
+    private static String shift(String word, Random random, int moved) {
+        char[] letters = word.toCharArray();
+        for (int i = 0; i < moved; i++) {
+            int at = random.nextInt(letters.length);
+            letters[at] = (char) ('A' + (letters[at] - 'A' + 1 + random.nextInt(2)) % 26);
+        }
+        return new String(letters);
+    }
+
+    /**
+     * A letter can only step to letters within 13 of its target, so every
+     * letter is moved 10 places without wrapping to keep the word solvable.
+     * @param word an uppercase word
+     * @return the word with every letter moved 10 places along the alphabet
+     */
+    private static String far(String word) {
+        char[] letters = word.toCharArray();
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = (char) (letters[i] <= 'P' ? letters[i] + 10 : letters[i] - 10);
+        }
+        return new String(letters);
+    }
+
+    /**
+     * Run the stress test
+     * @param args optional clock sizes in hours
+     */
+    public static void main(String[] args) {
+        int[] hours = DEFAULT_HOURS;
+        if (args.length > 0) {
+            hours = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                hours[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.println("Repeated getNeighbors:");
+        repeated("clock " + hours[0] + " hours", new Clock.ClockConfig(hours[0], 1, hours[0] / 2));
+        repeated("strings " + WORDS[0].length() + " letters", new Strings.StringsConfig(WORDS[0], WORDS[1].substring(0, WORDS[0].length())));
+        if (allocatedBytes() < 0) {
+            System.out.println("  (allocation figures unavailable on this JVM)");
+        }
+
+        System.out.println("Clock, hand starting opposite the end hour:");
+        for (int size : hours) {
+            Clock.ClockConfig start = new Clock.ClockConfig(size, 1, size / 2 + 1);
+            solve(size + " hours", () -> {
+                Solver solver = new Solver();
+                solver.solve(start);
+                return solver.getMetrics();
+            });
+            solve(size + " hours", () -> {
+                Solver solver = new Solver();
+                solver.solveBidirectional(start);
+                return solver.getMetrics();
+            });
+            solve(size + " hours", () -> {
+                AStarSolver solver = new AStarSolver();
+                solver.solve(start);
+                return solver.getMetrics();
+            });
+        }
+
+        System.out.println("Strings:");
+        Random random = new Random(7);
+        for (String word : WORDS) {
+            String name = word.length() + " letters";
+            Strings.StringsConfig close = new Strings.StringsConfig(word, shift(word, random, 4));
+            solve(name + ", few moved", () -> {
+                Solver solver = new Solver();
+                solver.solveBidirectional(close);
+                return solver.getMetrics();
+            });
+            Strings.StringsConfig distant = new Strings.StringsConfig(word, far(word));
+            solve(name + ", all moved", () -> {
+                AStarSolver solver = new AStarSolver();
+                solver.solve(distant);
+                return solver.getMetrics();
+            });
+        }
+        System.out.println("sink " + (sink & 1));
+    }
+}
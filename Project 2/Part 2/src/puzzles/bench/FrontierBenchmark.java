@@ -0,0 +1,130 @@
+package puzzles.bench;
+
+import puzzles.chess.model.ChessConfig;
+import puzzles.common.solver.ArrayFrontier;
+import puzzles.common.solver.Configuration;
+import puzzles.common.solver.Frontier;
+import puzzles.common.solver.Solver;
+import puzzles.hoppers.model.HoppersConfig;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Compares expansions per second of the solver with the old linked list
+ * queue against the circular array frontier on Hoppers and Chess puzzle files.
+ *
+ * @author Nam Huynh
+ */
+
+public class FrontierBenchmark {
+    /**
+     * number of untimed solves per file so the JIT can warm up
+     */
+    private static final int WARMUP_RUNS = 3;
+    /**
+     * number of timed solves per file
+     */
+    private static final int TIMED_RUNS = 5;
+
+    /**
+     * The frontier the solver used before, a linked list where every
+     * removal goes through remove(0).
+     */
+    private static class LinkedListFrontier implements Frontier {
+        /**
+         * the queue
+         */
+        private final List<Configuration> queue = new LinkedList<>();
+
+        @Override
+        public void add(Configuration configuration) {
+            queue.add(configuration);
+        }
+
+        @Override
+        public Configuration remove() {
+            return queue.remove(0);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return queue.isEmpty();
+        }
+
+        @Override
+        public int size() {
+            return queue.size();
+        }
+
+        @Override
+        public void clear() {
+            queue.clear();
+        }
+    }
+
+    /**
+     * Load a puzzle file, using the directory name or file name to decide
+     * whether it holds a Hoppers or a Chess board
+     * @param filename the puzzle file
+     * @return the starting configuration
+     * @throws IOException if the file cannot be read
+     */
+    static Configuration load(String filename) throws IOException {
+        if (filename.contains("chess")) {
+            return new ChessConfig(filename);
+        }
+        return new HoppersConfig(filename);
+    }
+
+    /**
+     * Solve a configuration repeatedly and report expansions per second
+     * @param name label of the frontier
+     * @param frontier creates the frontier for each solve
+     * @param filename the puzzle file
+     * @return expansions per second over the timed runs
+     * @throws IOException if the file cannot be read
+     */
+    private static double measure(String name, Supplier<Frontier> frontier, String filename) throws IOException {
+        Solver solver = new Solver(frontier);
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            solver.solve(load(filename));
+        }
+        long expansions = 0;
+        long elapsed = 0;
+        for (int i = 0; i < TIMED_RUNS; i++) {
+            Configuration start = load(filename);
+            long begin = System.nanoTime();
+            solver.solve(start);
+            elapsed += System.nanoTime() - begin;
+            expansions += solver.getExpansions();
+        }
+        double perSecond = expansions / (elapsed / 1e9);
+        System.out.printf("  %-12s %10d expansions %10.1f ms %14.0f expansions/sec%n",
+                name, expansions / TIMED_RUNS, elapsed / 1e6 / TIMED_RUNS, perSecond);
+        return perSecond;
+    }
+
+    /**
+     * Run the benchmark on each file given on the command line
+     * @param args the Hoppers and Chess puzzle files
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: java FrontierBenchmark filename...");
+            return;
+        }
+        for (String filename : args) {
+            try {
+                System.out.println("File: " + filename);
+                double before = measure("LinkedList", LinkedListFrontier::new, filename);
+                double after = measure("ring buffer", ArrayFrontier::new, filename);
+                System.out.printf("  speedup: %.2fx%n", after / before);
+            } catch (IOException ioe) {
+                System.out.println(ioe.getMessage());
+            }
+        }
+    }
+}
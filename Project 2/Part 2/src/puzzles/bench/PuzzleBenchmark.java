@@ -0,0 +1,347 @@
+package puzzles.bench;
+
+import puzzles.chess.model.ChessConfig;
+import puzzles.common.solver.Configuration;
+import puzzles.common.solver.PackedConfiguration;
+import puzzles.common.solver.Solver;
+import puzzles.hoppers.model.HoppersConfig;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Benchmark suite for the solver stack. Generates a seeded corpus of 5x5
+ * Hoppers and 4x4 Chess boards and measures, for each puzzle type:
+ * <ul>
+ *     <li>getNeighbors() and forEachNeighbor() throughput over configurations reached by BFS</li>
+ *     <li>hashCode() and equals() cost against equal copies</li>
+ *     <li>full solve time of every board in the corpus</li>
+ *     <li>bytes allocated per neighbor generation call and per solver expansion</li>
+ * </ul>
+ * Every measurement runs warmup rounds first and is repeated for several
+ * timed rounds, with results fed into a sink so the JIT cannot drop the work.
+ *
+ * @author Nam Huynh
+ */
+
+public class PuzzleBenchmark {
+    /**
+     * boards of each puzzle type generated when no count is given
+     */
+    private static final int DEFAULT_BOARDS = 20;
+    /**
+     * seed of the corpus when none is given
+     */
+    private static final long DEFAULT_SEED = 42;
+    /**
+     * most configurations sampled from each board for the micro benchmarks
+     */
+    private static final int SAMPLE_PER_BOARD = 200;
+    /**
+     * number of untimed rounds so the JIT can warm up
+     */
+    private static final int WARMUP_RUNS = 3;
+    /**
+     * number of timed rounds
+     */
+    private static final int TIMED_RUNS = 5;
+    /**
+     * passes over the sample per round for hashCode and equals, which are
+     * too quick to time over a single pass
+     */
+    private static final int PASSES = 200;
+
+    /**
+     * results are folded in here so no measured call is dead code
+     */
+    private static long sink;
+
+    /**
+     * Bytes allocated so far by the current thread, or -1 if the JVM does
+     * not track allocations per thread
+     * @return allocated bytes
+     */
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemoryEnabled()) {
+            return threads.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    /**
+     * Write a random 5x5 Hoppers board with one red frog and some green ones
+     * on the playable squares
+     * @param random the source of randomness
+     * @param file where to write the board
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeHoppers(Random random, Path file) throws IOException {
+        List<int[]> playable = new ArrayList<>();
+        for (int row = 0; row < 5; row++) {
+            for (int col = 0; col < 5; col++) {
+                if ((row + col) % 2 == 0) {
+                    playable.add(new int[]{row, col});
+                }
+            }
+        }
+        Collections.shuffle(playable, random);
+        char[][] cells = new char[5][5];
+        for (int row = 0; row < 5; row++) {
+            for (int col = 0; col < 5; col++) {
+                cells[row][col] = (row + col) % 2 == 0 ? '.' : '*';
+            }
+        }
+        int greens = 4 + random.nextInt(5);
+        cells[playable.get(0)[0]][playable.get(0)[1]] = 'R';
+        for (int i = 1; i <= greens; i++) {
+            cells[playable.get(i)[0]][playable.get(i)[1]] = 'G';
+        }
+        write(file, cells);
+    }
+
+    /**
+     * Write a random 4x4 Chess board with between 4 and 8 pieces
+     * @param random the source of randomness
+     * @param file where to write the board
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeChess(Random random, Path file) throws IOException {
+        List<Integer> squares = new ArrayList<>();
+        for (int square = 0; square < 16; square++) {
+            squares.add(square);
+        }
+        Collections.shuffle(squares, random);
+        char[][] cells = new char[4][4];
+        for (char[] row : cells) {
+            Arrays.fill(row, '.');
+        }
+        int count = 4 + random.nextInt(5);
+        for (int i = 0; i < count; i++) {
+            cells[squares.get(i) / 4][squares.get(i) % 4] = "KQRBNP".charAt(random.nextInt(6));
+        }
+        write(file, cells);
+    }
+
+    /**
+     * Write a board in the puzzle file format
+     * @param file where to write it
+     * @param cells the board
+     * @throws IOException if the file cannot be written
+     */
+    private static void write(Path file, char[][] cells) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.println(cells.length + " " + cells[0].length);
+            for (char[] row : cells) {
+                StringJoiner line = new StringJoiner(" ");
+                for (char cell : row) {
+                    line.add(String.valueOf(cell));
+                }
+                out.println(line);
+            }
+        }
+    }
+
+    /**
+     * Collect configurations reached by BFS from each board
+     * @param boards the starting configurations
+     * @return up to SAMPLE_PER_BOARD configurations from each board
+     */
+    private static List<Configuration> sample(List<Configuration> boards) {
+        List<Configuration> sample = new ArrayList<>();
+        for (Configuration board : boards) {
+            Set<Configuration> seen = new HashSet<>(List.of(board));
+            Deque<Configuration> queue = new ArrayDeque<>(List.of(board));
+            while (!queue.isEmpty() && seen.size() < SAMPLE_PER_BOARD) {
+                for (Configuration neighbor : queue.remove().getNeighbors()) {
+                    if (seen.add(neighbor)) {
+                        queue.add(neighbor);
+                    }
+                }
+            }
+            sample.addAll(seen);
+        }
+        return sample;
+    }
+
+    /**
+     * Count the neighbors of a configuration the way the solvers or the old callers generate them
+     * @param config the configuration to expand
+     * @param callback whether to use forEachNeighbor() rather than getNeighbors()
+     * @return the number of neighbors
+     */
+    private static int expand(Configuration config, boolean callback) {
+        if (!callback) {
+            return config.getNeighbors().size();
+        }
+        int[] count = new int[1];
+        config.forEachNeighbor(neighbor -> count[0] += 1);
+        return count[0];
+    }
+
+    /**
+     * Time getNeighbors() or forEachNeighbor() over the sample
+     * @param sample the configurations to expand
+     * @param callback whether to time forEachNeighbor() rather than getNeighbors()
+     */
+    private static void neighbors(List<Configuration> sample, boolean callback) {
+        for (int run = 0; run < WARMUP_RUNS; run++) {
+            for (Configuration config : sample) {
+                sink += expand(config, callback);
+            }
+        }
+        long generated = 0;
+        long allocated = allocatedBytes();
+        long begin = System.nanoTime();
+        for (int run = 0; run < TIMED_RUNS; run++) {
+            for (Configuration config : sample) {
+                generated += expand(config, callback);
+            }
+        }
+        long elapsed = System.nanoTime() - begin;
+        allocated = allocatedBytes() - allocated;
+        sink += generated;
+        long calls = (long) sample.size() * TIMED_RUNS;
+        System.out.printf("  %-15s%11.0f calls/sec %14.0f neighbors/sec %10.0f bytes/call%n",
+                callback ? "forEachNeighbor" : "getNeighbors",
+                calls / (elapsed / 1e9), generated / (elapsed / 1e9), (double) allocated / calls);
+    }
+
+    /**
+     * Time hashCode() on the sample and equals() between each configuration
+     * and an equal copy rebuilt from its packed state
+     * @param sample the configurations to hash and compare
+     */
+    private static void hashing(List<Configuration> sample) {
+        List<Configuration> copies = new ArrayList<>();
+        for (Configuration config : sample) {
+            PackedConfiguration packed = (PackedConfiguration) config;
+            copies.add(packed.unpack(packed.pack()));
+        }
+        for (int run = 0; run < WARMUP_RUNS * PASSES; run++) {
+            for (int i = 0; i < sample.size(); i++) {
+                sink += sample.get(i).hashCode();
+                sink += sample.get(i).equals(copies.get(i)) ? 1 : 0;
+            }
+        }
+        long begin = System.nanoTime();
+        for (int run = 0; run < TIMED_RUNS * PASSES; run++) {
+            for (Configuration config : sample) {
+                sink += config.hashCode();
+            }
+        }
+        long hashed = System.nanoTime() - begin;
+        begin = System.nanoTime();
+        for (int run = 0; run < TIMED_RUNS * PASSES; run++) {
+            for (int i = 0; i < sample.size(); i++) {
+                sink += sample.get(i).equals(copies.get(i)) ? 1 : 0;
+            }
+        }
+        long compared = System.nanoTime() - begin;
+        long calls = (long) sample.size() * TIMED_RUNS * PASSES;
+        System.out.printf("  hashCode      %12.1f ns/call%n", (double) hashed / calls);
+        System.out.printf("  equals        %12.1f ns/call%n", (double) compared / calls);
+    }
+
+    /**
+     * Time solving every board
+     * @param boards the starting configurations
+     */
+    private static void solves(List<Configuration> boards) {
+        Solver solver = new Solver();
+        for (int run = 0; run < WARMUP_RUNS; run++) {
+            for (Configuration board : boards) {
+                sink += solver.solve(board).size();
+            }
+        }
+        long expansions = 0;
+        int solved = 0;
+        long allocated = allocatedBytes();
+        long begin = System.nanoTime();
+        for (int run = 0; run < TIMED_RUNS; run++) {
+            for (Configuration board : boards) {
+                if (!solver.solve(board).isEmpty()) {
+                    solved += 1;
+                }
+                expansions += solver.getExpansions();
+            }
+        }
+        long elapsed = System.nanoTime() - begin;
+        allocated = allocatedBytes() - allocated;
+        sink += expansions;
+        System.out.printf("  solve         %12.3f ms/board %10d of %d solved %10.0f bytes/expansion%n",
+                elapsed / 1e6 / ((long) boards.size() * TIMED_RUNS), solved / TIMED_RUNS, boards.size(),
+                (double) allocated / expansions);
+    }
+
+    /**
+     * Run every benchmark on one puzzle type
+     * @param name the puzzle type
+     * @param boards the generated boards
+     */
+    private static void suite(String name, List<Configuration> boards) {
+        List<Configuration> sample = sample(boards);
+        System.out.println(name + ": " + boards.size() + " boards, " + sample.size() + " sampled configurations");
+        neighbors(sample, false);
+        neighbors(sample, true);
+        hashing(sample);
+        solves(boards);
+    }
+
+    /**
+     * Generate the corpus and run the suite on each puzzle type
+     * @param args an optional "-n boards" and "-s seed"
+     */
+    public static void main(String[] args) {
+        int count = DEFAULT_BOARDS;
+        long seed = DEFAULT_SEED;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-n" -> count = Integer.parseInt(args[i + 1]);
+                case "-s" -> seed = Long.parseLong(args[i + 1]);
+                default -> {
+                    System.out.println("Usage: java PuzzleBenchmark [-n boards] [-s seed]");
+                    return;
+                }
+            }
+        }
+        Random random = new Random(seed);
+        List<Configuration> hoppers = new ArrayList<>();
+        List<Configuration> chess = new ArrayList<>();
+        Path corpus = null;
+        try {
+            corpus = Files.createTempDirectory("corpus");
+            for (int i = 0; i < count; i++) {
+                Path file = corpus.resolve("hoppers-" + i + ".txt");
+                writeHoppers(random, file);
+                hoppers.add(new HoppersConfig(file.toString()));
+                file = corpus.resolve("chess-" + i + ".txt");
+                writeChess(random, file);
+                chess.add(new ChessConfig(file.toString()));
+            }
+        } catch (IOException ioe) {
+            System.out.println(ioe.getMessage());
+            return;
+        } finally {
+            if (corpus != null) {
+                try (var files = Files.list(corpus)) {
+                    for (Path file : files.toList()) {
+                        Files.deleteIfExists(file);
+                    }
+                    Files.deleteIfExists(corpus);
+                } catch (IOException ignored) {}
+            }
+        }
+        System.out.println("Corpus seed " + seed);
+        suite("Hoppers 5x5", hoppers);
+        suite("Chess 4x4", chess);
+        if (allocatedBytes() < 0) {
+            System.out.println("(allocation figures unavailable on this JVM)");
+        }
+        System.out.println("sink " + (sink & 1));
+    }
+}
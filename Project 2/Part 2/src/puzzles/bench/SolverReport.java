@@ -0,0 +1,93 @@
+package puzzles.bench;
+
+import puzzles.common.solver.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Solves each Hoppers or Chess puzzle file once and prints the solver's
+ * metrics as one JSON object per line, so runs over many files can be
+ * collected and graphed.
+ *
+ * @author Nam Huynh
+ */
+
+public class SolverReport {
+    /**
+     * Solve a configuration with the named search
+     * @param algorithm bfs, parallel, compact, external, astar, ida or ida-tt
+     * @param start the starting configuration
+     * @return the metrics of the solve
+     * @throws IOException if the external search cannot use its files
+     */
+    private static SolverMetrics run(String algorithm, Configuration start) throws IOException {
+        switch (algorithm) {
+            case "bfs" -> {
+                Solver solver = new Solver();
+                solver.solve(start);
+                return solver.getMetrics();
+            }
+            case "parallel" -> {
+                Solver solver = new Solver(ForkJoinPool.commonPool());
+                solver.solve(start);
+                return solver.getMetrics();
+            }
+            case "compact" -> {
+                Solver solver = new Solver();
+                solver.solveCompact((PackedConfiguration) start);
+                return solver.getMetrics();
+            }
+            case "external" -> {
+                ExternalSolver solver = new ExternalSolver(Path.of(System.getProperty("java.io.tmpdir")));
+                solver.solve((PackedConfiguration) start);
+                return solver.getMetrics();
+            }
+            case "astar" -> {
+                AStarSolver solver = new AStarSolver();
+                solver.solve(start);
+                return solver.getMetrics();
+            }
+            case "ida", "ida-tt" -> {
+                IDAStarSolver solver = new IDAStarSolver(algorithm.equals("ida-tt") ? IDAStarSolver.TABLE_SIZE : 0);
+                solver.solve(start);
+                return solver.getMetrics();
+            }
+            default -> throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+        }
+    }
+
+    /**
+     * @param text any string
+     * @return the string with JSON special characters escaped
+     */
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /**
+     * Print the metrics of solving each file given on the command line
+     * @param args an optional "-a algorithm" followed by the puzzle files
+     */
+    public static void main(String[] args) {
+        String algorithm = "bfs";
+        int first = 0;
+        if (args.length >= 2 && args[0].equals("-a")) {
+            algorithm = args[1];
+            first = 2;
+        }
+        if (args.length == first) {
+            System.out.println("Usage: java SolverReport [-a bfs|parallel|compact|external|astar|ida|ida-tt] filename...");
+            return;
+        }
+        for (int i = first; i < args.length; i++) {
+            try {
+                String json = run(algorithm, FrontierBenchmark.load(args[i])).toJson();
+                System.out.println("{\"file\":\"" + escape(args[i]) + "\"," + json.substring(1));
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("{\"file\":\"" + escape(args[i]) + "\",\"error\":\"" + escape(String.valueOf(e.getMessage())) + "\"}");
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package puzzles.chess.gui;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
@@ -12,6 +13,7 @@ import javafx.scene.paint.Color;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import puzzles.common.Observer;
+import puzzles.chess.model.ChessConfig;
 import puzzles.chess.model.ChessModel;
 
 import java.io.File;
@@ -67,58 +69,81 @@ public class ChessGUI extends Application implements Observer<ChessModel, String
 
     private GridPane board;
 
+    /** the image on each square's button, changed in place instead of replaced */
+    private ImageView[][] pieces;
+
+    /** the piece each square shows now, so only squares that change are redrawn */
+    private char[][] shown;
+
     private Label status;
 
     /**
-     * Creates the chess board
+     * Creates the buttons of the chess board, with no pieces yet
+     * @param rows The number of rows of the board
+     * @param cols The number of cols of the board
      */
-    protected void makeBoard(){
-        Background squareColor = DARK;
-        String [] config = model.configToString().strip().split("\n");
-        for ( int r = 0; r < config.length; r++){
-            String[] pieceList = config[r].split("\\s+");
-            for (int c = 0; c < pieceList.length; c++){
+    protected void makeBoard(int rows, int cols){
+        this.board = new GridPane();
+        this.pieces = new ImageView[rows][cols];
+        this.shown = new char[rows][cols];
+        for (int r = 0; r < rows; r++){
+            for (int c = 0; c < cols; c++){
                 int Rselect = r;
                 int Cselect = c;
+                ImageView piece = new ImageView();
                 Button button = new Button();
-                button.setBackground(squareColor);
-                if (pieceList.length % 2 == 0){
-                    if (squareColor.equals(DARK)){
-                        if (c == pieceList.length-1){
-                            squareColor = DARK;
-                        } else {
-                            squareColor = LIGHT;
-                        }
-                    } else {
-                        if (c == pieceList.length-1){
-                            squareColor = LIGHT;
-                        } else {
-                            squareColor = DARK;
-                        }
-                    }
-                } else {
-                    if (squareColor.equals(DARK)){
-                        squareColor = LIGHT;
-                    } else {
-                        squareColor = DARK;
-                }
-            }
-                switch (pieceList[c].charAt(0)){
-                    case 'K' -> button.setGraphic(new ImageView(king));
-                    case 'Q' -> button.setGraphic(new ImageView(queen));
-                    case 'R' -> button.setGraphic(new ImageView(rook));
-                    case 'B' -> button.setGraphic(new ImageView(bishop));
-                    case 'N' -> button.setGraphic(new ImageView(knight));
-                    case 'P' -> button.setGraphic(new ImageView(pawn));
-                }
+                button.setBackground((r + c) % 2 == 0 ? DARK : LIGHT);
+                button.setGraphic(piece);
                 button.setOnAction(event -> model.select("s " + Rselect + " " + Cselect));
                 button.setMaxSize(ICON_SIZE, ICON_SIZE);
                 button.setMinSize(ICON_SIZE, ICON_SIZE);
                 this.board.add(button, c, r);
+                this.pieces[r][c] = piece;
+            }
+        }
+        this.background.setCenter(this.board);
+        this.stage.sizeToScene();  // when a different sized puzzle is loaded
+    }
+
+    /**
+     * Brings the board up to date with the model. The buttons are only
+     * made again when the board changes size; otherwise just the squares
+     * whose piece changed get a new image.
+     */
+    protected void refreshBoard(){
+        ChessConfig config = this.model.getCurrentConfig();
+        int[] dimensions = config.getDimensions();
+        if (this.board == null || dimensions[0] != this.shown.length || dimensions[1] != this.shown[0].length){
+            this.makeBoard(dimensions[0], dimensions[1]);
+        }
+        for (int r = 0; r < dimensions[0]; r++){
+            for (int c = 0; c < dimensions[1]; c++){
+                char piece = config.getPiece(r * dimensions[1] + c);
+                if (piece != this.shown[r][c]){
+                    this.shown[r][c] = piece;
+                    this.pieces[r][c].setImage(this.imageOf(piece));
+                }
             }
         }
     }
 
+    /**
+     * Gets the image of a piece
+     * @param piece The char representation of the piece
+     * @return The image of the piece, null for an empty square
+     */
+    private Image imageOf(char piece){
+        return switch (piece){
+            case 'K' -> king;
+            case 'Q' -> queen;
+            case 'R' -> rook;
+            case 'B' -> bishop;
+            case 'N' -> knight;
+            case 'P' -> pawn;
+            default -> null;
+        };
+    }
+
     /**
      * Makes the load, reset, and hint buttons
      * @return HBox containing the load, reset, and hint buttons
@@ -137,12 +162,8 @@ public class ChessGUI extends Application implements Observer<ChessModel, String
             chooser.setInitialDirectory(new File(currentPath));
             File file = chooser.showOpenDialog(stage);
             if (file != null) {
-                String fileName = "data/chess/" + file.getName();
-                model.load("l " + fileName);
-                this.board = new GridPane();
-                this.makeBoard();
-                this.background.setCenter(this.board);
-                this.stage.sizeToScene();
+                // the update from the model redraws the board
+                model.load("l data/chess/" + file.getName());
             }
         });
 
@@ -184,9 +205,7 @@ public class ChessGUI extends Application implements Observer<ChessModel, String
 
         this.background.setBottom(this.makeInputs());
 
-        this.board = new GridPane();
-        this.makeBoard();
-        this.background.setCenter(this.board);
+        this.refreshBoard();
 
         this.status = new Label();
         BorderPane.setAlignment(status, Pos.CENTER);
@@ -206,10 +225,14 @@ public class ChessGUI extends Application implements Observer<ChessModel, String
      */
     @Override
     public void update(ChessModel chessModel, String msg) {
+        // hints report from their background thread
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(() -> update(chessModel, msg));
+            return;
+        }
         this.status.setText(msg);
         model = chessModel;
-        this.makeBoard();
-        this.stage.sizeToScene();  // when a different sized puzzle is loaded
+        this.refreshBoard();
     }
 
     /**
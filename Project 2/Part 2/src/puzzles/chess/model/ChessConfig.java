@@ -2,23 +2,171 @@ package puzzles.chess.model;
 
 import puzzles.common.Coordinates;
 import puzzles.common.solver.Configuration;
+import puzzles.common.solver.PackedConfiguration;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * Implementation of one configuration of a chess puzzle.
  * @author Alex Eng
  */
 
-public class ChessConfig implements Configuration {
+public class ChessConfig implements PackedConfiguration {
 
     /**
-     * Array of the different pieces that can populate a space on the board
+     * Row and column steps of the eight rays, rook directions first
+     * (S, N, E, W) then bishop directions (SE, NW, SW, NE)
      */
-    private static final char[] PIECE_ARRAY = {'K', 'Q', 'R', 'B', 'N', 'P'};
+    private static final int[][] RAY_STEPS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {-1, -1}, {1, -1}, {-1, 1}};
+    /**
+     * Row and column steps of a king
+     */
+    private static final int[][] KING_STEPS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {-1, -1}, {-1, 1}, {1, -1}};
+    /**
+     * Row and column steps of a knight
+     */
+    private static final int[][] KNIGHT_STEPS = {{2, 1}, {-2, 1}, {2, -1}, {-2, -1}, {1, 2}, {-1, -2}, {-1, 2}, {1, -2}};
+    /**
+     * Row and column steps of a pawn capture
+     */
+    private static final int[][] PAWN_STEPS = {{-1, 1}, {-1, -1}};
+    /**
+     * The pieces in the order of their Zobrist table columns; any other
+     * character shares the last column
+     */
+    private static final String PIECES = "KQRBNP";
+    /**
+     * Seed for the Zobrist keys, fixed so equal boards hash the same in every load
+     */
+    private static final long ZOBRIST_SEED = 0x5DEECE66DL;
+
+    /**
+     * Move tables for one board size, precomputed once per size and shared
+     * by every configuration of that size. Squares are numbered in
+     * row-major order so a whole board fits in one long.
+     */
+    private static final class MoveTables {
+        /**
+         * the tables built so far, keyed by rows in the high half and cols in the low half
+         */
+        private static final Map<Integer, MoveTables> BY_SIZE = new ConcurrentHashMap<>();
+
+        /**
+         * squares a king on each square attacks
+         */
+        private final long[] king;
+        /**
+         * squares a knight on each square attacks
+         */
+        private final long[] knight;
+        /**
+         * squares a pawn on each square attacks
+         */
+        private final long[] pawn;
+        /**
+         * for each square and each of the eight rays, the squares along it in order
+         */
+        private final int[][][] rays;
+        /**
+         * a random key for every piece on every square, XORed together to hash a board
+         */
+        private final long[][] zobrist;
+        /**
+         * square mappings for the left-right mirror, the top-bottom mirror
+         * and both together, in that order
+         */
+        private final int[][] mirrors;
+
+        /**
+         * @param rows The number of rows in the puzzle
+         * @param cols The number of cols in the puzzle
+         * @return the tables for that size, built on first use
+         */
+        private static MoveTables forSize(int rows, int cols){
+            return BY_SIZE.computeIfAbsent(rows << 16 | cols, size -> new MoveTables(rows, cols));
+        }
+
+        /**
+         * @param rows The number of rows in the puzzle
+         * @param cols The number of cols in the puzzle
+         */
+        private MoveTables(int rows, int cols){
+            int squares = rows * cols;
+            this.mirrors = new int[3][squares];
+            for (int r = 0; r < rows; r++){
+                for (int c = 0; c < cols; c++){
+                    this.mirrors[0][r * cols + c] = r * cols + (cols - 1 - c);
+                    this.mirrors[1][r * cols + c] = (rows - 1 - r) * cols + c;
+                    this.mirrors[2][r * cols + c] = (rows - 1 - r) * cols + (cols - 1 - c);
+                }
+            }
+            SplittableRandom random = new SplittableRandom(ZOBRIST_SEED);
+            this.zobrist = new long[squares][PIECES.length() + 1];
+            for (long[] keys : this.zobrist){
+                for (int i = 0; i < keys.length; i++){
+                    keys[i] = random.nextLong();
+                }
+            }
+            this.king = new long[squares];
+            this.knight = new long[squares];
+            this.pawn = new long[squares];
+            this.rays = new int[squares][RAY_STEPS.length][];
+            for (int r = 0; r < rows; r++){
+                for (int c = 0; c < cols; c++){
+                    int square = r * cols + c;
+                    this.king[square] = mask(rows, cols, r, c, KING_STEPS);
+                    this.knight[square] = mask(rows, cols, r, c, KNIGHT_STEPS);
+                    this.pawn[square] = mask(rows, cols, r, c, PAWN_STEPS);
+                    for (int d = 0; d < RAY_STEPS.length; d++){
+                        List<Integer> ray = new ArrayList<>();
+                        int rr = r + RAY_STEPS[d][0];
+                        int cc = c + RAY_STEPS[d][1];
+                        while (rr >= 0 && rr < rows && cc >= 0 && cc < cols){
+                            ray.add(rr * cols + cc);
+                            rr += RAY_STEPS[d][0];
+                            cc += RAY_STEPS[d][1];
+                        }
+                        this.rays[square][d] = ray.stream().mapToInt(Integer::intValue).toArray();
+                    }
+                }
+            }
+        }
+
+        /**
+         * @param square The row-major index of the square
+         * @param piece The char representation of the piece
+         * @return the Zobrist key of that piece on that square
+         */
+        private long key(int square, char piece){
+            int index = PIECES.indexOf(piece);
+            return this.zobrist[square][index < 0 ? PIECES.length() : index];
+        }
+
+        /**
+         * @param rows The number of rows in the puzzle
+         * @param cols The number of cols in the puzzle
+         * @param r The row of the piece
+         * @param c The column of the piece
+         * @param steps The row and column offsets the piece can reach
+         * @return a bitboard of the on-board squares one step away from (r, c)
+         */
+        private static long mask(int rows, int cols, int r, int c, int[][] steps){
+            long result = 0L;
+            for (int[] step : steps){
+                int rr = r + step[0];
+                int cc = c + step[1];
+                if (rr >= 0 && rr < rows && cc >= 0 && cc < cols){
+                    result |= 1L << (rr * cols + cc);
+                }
+            }
+            return result;
+        }
+    }
 
     /**
      * char representation of an empty space
@@ -33,14 +181,70 @@ public class ChessConfig implements Configuration {
      */
     private final int cols;
     /**
-     * Map of all the pieces currently on the board
+     * The chess board in row-major order, one piece char per square, EMPTY where empty
+     */
+    private final byte[] board;
+
+    /**
+     * One bit set for every occupied square, in row-major order. Doubles
+     * as the index of the pieces: walking its set bits visits every piece
+     * without looking at the empty squares.
      */
-    private final HashMap<Coordinates, Character> pieces;
+    private final long occupied;
 
     /**
-     * 2D array representation of the chess board
+     * Move tables shared with every configuration of this board size
      */
-    private final char[][] board;
+    private final MoveTables tables;
+
+    /**
+     * Zobrist hash of the board, updated from the parent's in the copy constructor
+     */
+    private final long zobrist;
+
+    /**
+     * The visited-set key for a board and all its mirror images: the
+     * pieces of the image with the smallest hash, one byte per square.
+     */
+    private static final class MirrorKey {
+        /**
+         * Zobrist hash of the chosen image
+         */
+        private final long zobrist;
+        /**
+         * the pieces of the chosen image in row-major order, 0 where empty
+         */
+        private final byte[] squares;
+
+        /**
+         * @param zobrist Zobrist hash of the chosen image
+         * @param squares the pieces of the chosen image in row-major order
+         */
+        private MirrorKey(long zobrist, byte[] squares){
+            this.zobrist = zobrist;
+            this.squares = squares;
+        }
+
+        /**
+         * @return Hash code of the key
+         */
+        @Override
+        public int hashCode() {
+            return Long.hashCode(this.zobrist);
+        }
+
+        /**
+         * @param other The object being compared
+         * @return True if both keys stand for the same set of mirror images
+         */
+        @Override
+        public boolean equals(Object other) {
+            if (other instanceof MirrorKey o){
+                return this.zobrist == o.zobrist && Arrays.equals(this.squares, o.squares);
+            }
+            return false;
+        }
+    }
 
     /**
      * Constructor method
@@ -53,21 +257,61 @@ public class ChessConfig implements Configuration {
             String[] fields = line.split("\\s+");
             this.rows = Integer.parseInt(fields[0]);
             this.cols = Integer.parseInt(fields[1]);
-            this.pieces = new HashMap<>();
-            this.board = new char[rows][cols];
+            if (this.rows * this.cols > Long.SIZE){
+                throw new IOException("Board larger than " + Long.SIZE + " squares: " + filename);
+            }
+            this.tables = MoveTables.forSize(this.rows, this.cols);
+            this.board = new byte[rows * cols];
+            long hash = 0L;
+            long pieces = 0L;
 
             for (int i = 0; i < this.rows; i++){
                 line = in.readLine();
                 fields = line.split("\\s+");
                 for (int j = 0; j < this.cols; j++){
-                    this.board[i][j] = fields[j].charAt(0);
-                    Coordinates location = new Coordinates(i, j);
-                    if (fields[j].charAt(0) != EMPTY){
-                        this.pieces.put(location, fields[j].charAt(0));
+                    char piece = fields[j].charAt(0);
+                    if (piece > Byte.MAX_VALUE){
+                        throw new IOException("Unknown piece " + piece + ": " + filename);
+                    }
+                    this.board[i * this.cols + j] = (byte) piece;
+                    if (piece != EMPTY){
+                        pieces |= 1L << (i * this.cols + j);
+                        hash ^= this.tables.key(i * this.cols + j, piece);
                     }
                 }
             }
+            this.occupied = pieces;
+            this.zobrist = hash;
+        }
+    }
+
+    /**
+     * Constructor for a board given square by square, such as one read from
+     * a puzzle pack, so no text is parsed
+     * @param rows The number of rows in the puzzle
+     * @param cols The number of cols in the puzzle
+     * @param squares One piece char per square in row-major order, '.' where
+     *                empty; copied, so it can be reused
+     * @throws IllegalArgumentException If the board is larger than 64 squares
+     */
+    public ChessConfig(int rows, int cols, byte[] squares){
+        if (rows < 1 || cols < 1 || rows * cols > Long.SIZE){
+            throw new IllegalArgumentException("Board must hold 1 to " + Long.SIZE + " squares: " + rows + "x" + cols);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.tables = MoveTables.forSize(rows, cols);
+        this.board = Arrays.copyOf(squares, rows * cols);
+        long hash = 0L;
+        long pieces = 0L;
+        for (int square = 0; square < this.board.length; square++){
+            if (this.board[square] != EMPTY){
+                pieces |= 1L << square;
+                hash ^= this.tables.key(square, (char) this.board[square]);
+            }
         }
+        this.occupied = pieces;
+        this.zobrist = hash;
     }
 
     /**
@@ -77,18 +321,94 @@ public class ChessConfig implements Configuration {
      * @param target The location of the piece being captured
      */
     public ChessConfig(ChessConfig other, Coordinates src, Coordinates target){
+        this(other, src.row() * other.cols + src.col(), target.row() * other.cols + target.col());
+    }
+
+    /**
+     * Copy constructor for creating neighbor configurations. The only
+     * allocation is the copy of the board.
+     * @param other The configuration being copied
+     * @param from The row-major index of the piece capturing the other
+     * @param to The row-major index of the piece being captured
+     */
+    private ChessConfig(ChessConfig other, int from, int to){
+        this.cols = other.cols;
+        this.rows = other.rows;
+        this.tables = other.tables;
+        this.board = other.board.clone();
+        char attacker = (char) other.board[from];
+        char victim = (char) other.board[to];
+        this.board[to] = (byte) attacker;
+        this.board[from] = EMPTY;
+        this.occupied = other.occupied & ~(1L << from);
+        this.zobrist = other.zobrist
+                ^ this.tables.key(from, attacker)
+                ^ this.tables.key(to, victim)
+                ^ this.tables.key(to, attacker);
+    }
+
+    /**
+     * Constructor for a configuration unpacked from {@link #pack()}
+     * @param other Any configuration of the same puzzle, for the shared tables
+     * @param state The packed state
+     */
+    private ChessConfig(ChessConfig other, long[] state){
         this.cols = other.cols;
         this.rows = other.rows;
-        this.pieces = new HashMap<>();
-        for (Coordinates coordinates : other.pieces.keySet()){
-            Character ch = other.pieces.get(coordinates);
-            this.pieces.put(coordinates, ch);
+        this.tables = other.tables;
+        this.occupied = state[0];
+        this.board = new byte[rows * cols];
+        Arrays.fill(this.board, (byte) EMPTY);
+        long hash = 0L;
+        long remaining = this.occupied;
+        for (int n = 0; remaining != 0; n++){
+            int square = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            char piece = PIECES.charAt((int) (state[1 + n * 3 / 64] >>> (n * 3 % 64)) & 7);
+            if (n * 3 % 64 > 61){
+                // the code straddles two longs
+                piece = PIECES.charAt((int) ((state[1 + n * 3 / 64] >>> (n * 3 % 64))
+                        | (state[2 + n * 3 / 64] << (64 - n * 3 % 64))) & 7);
+            }
+            this.board[square] = (byte) piece;
+            hash ^= this.tables.key(square, piece);
         }
-        this.board = new char[rows][cols];
-        for (int r = 0; r < rows; r ++){
-            System.arraycopy(other.board[r], 0, this.board[r], 0, cols);
+        this.zobrist = hash;
+    }
+
+    /**
+     * Packs the board as its occupancy bitboard followed by a 3 bit piece
+     * code for each occupied square in row-major order
+     * @return the packed state, 1 + ceil(3 * squares / 64) longs
+     * @throws IllegalStateException if the board holds a piece other than KQRBNP
+     */
+    @Override
+    public long[] pack() {
+        long[] state = new long[1 + (3 * rows * cols + 63) / 64];
+        state[0] = this.occupied;
+        long remaining = this.occupied;
+        for (int n = 0; remaining != 0; n++){
+            int square = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            long code = PIECES.indexOf(this.board[square]);
+            if (code < 0){
+                throw new IllegalStateException("Cannot pack piece " + (char) this.board[square]);
+            }
+            state[1 + n * 3 / 64] |= code << (n * 3 % 64);
+            if (n * 3 % 64 > 61){
+                state[2 + n * 3 / 64] |= code >>> (64 - n * 3 % 64);
+            }
         }
-        this.takePiece(src, target);
+        return state;
+    }
+
+    /**
+     * @param state A packed state from {@link #pack()} on a board of this size
+     * @return The configuration that was packed
+     */
+    @Override
+    public ChessConfig unpack(long[] state) {
+        return new ChessConfig(this, state);
     }
 
     /**
@@ -106,228 +426,65 @@ public class ChessConfig implements Configuration {
      * @return Set of all coordinates that the piece can legally move to.
      */
     public Set<Coordinates> getMoves(Coordinates src, char token){
-        int[] tmp = src.coordToArray();
         Set<Coordinates> moves = new HashSet<>();
-        int r = tmp[0]; // for checking diagonals
-        int c = tmp[1]; // for checking diagonals
-        switch (token) {
-            case 'K' -> {
-                moves.add(new Coordinates(tmp[0] + 1, tmp[1])); // south
-                moves.add(new Coordinates(tmp[0] - 1, tmp[1])); // north
-                moves.add(new Coordinates(tmp[0], tmp[1] + 1)); // east
-                moves.add(new Coordinates(tmp[0], tmp[1] - 1)); // west
-                moves.add(new Coordinates(tmp[0] + 1, tmp[1] + 1)); // SE
-                moves.add(new Coordinates(tmp[0] - 1, tmp[1] - 1)); // NW
-                moves.add(new Coordinates(tmp[0] - 1, tmp[1] + 1)); // NE
-                moves.add(new Coordinates(tmp[0] + 1, tmp[1] - 1)); // SW
-
-                moves.removeIf(move -> !this.pieces.containsKey(move));
-            }
-            case 'Q' -> { // Queen only glitches out when there are no more moves available for it to make or its on a border
-                while (r < this.rows) { // S
-                    r++;
-                    Coordinates candidate = new Coordinates(r, c);
-                    if (this.pieces.containsKey(candidate)){
-                        moves.add(candidate);
-                        break;
-                    }
-                }
-                r = tmp[0];
-                while (r > 0) { // N
-                    r--;
-                    Coordinates candidate = new Coordinates(r, c);
-                    if (this.pieces.containsKey(candidate)){
-                        moves.add(candidate);
-                        break;
-                    }
-                }
-                r = tmp[0];
-                while (c < this.cols) { // E
-                    c++;
-                    Coordinates candidate = new Coordinates(r, c);
-                    if (this.pieces.containsKey(candidate)){
-                        moves.add(candidate);
-                        break;
-                    }
-                }
-                c = tmp[1];
-                while (c > 0) { // W
-                    c--;
-                    Coordinates candidate = new Coordinates(r, c);
-                    if (this.pieces.containsKey(candidate)){
-                        moves.add(candidate);
-                        break;
-                    }
-                }
-                c = tmp[1];
-                moves.removeIf(move -> !this.pieces.containsKey(move));
-
-                while (r < this.rows && c < this.cols) { // SE
-                    r++;
-                    c++;
-                    Coordinates candidate = new Coordinates(r, c);
-                    if (this.pieces.containsKey(candidate)){
-                        moves.add(candidate);
-                        break;
-                    }
-                }
-                r = tmp[0];
-                c = tmp[1];
-                while (r > 0 && c > 0) { // NW
-                    r--;
-                    c--;
-                    Coordinates candidate = new Coordinates(r, c);
-                    if (this.pieces.containsKey(candidate)){
-                        moves.add(candidate);
-                        break;
-                    }
-                }
-                r = tmp[0];
-                c = tmp[1];
-                while (r < this.rows && c > 0) { // SW
-                    r++;
-                    c--;
-                    Coordinates candidate = new Coordinates(r, c);
-                    if (this.pieces.containsKey(candidate)){
-                        moves.add(candidate);
-                        break;
-                    }
-                }
-                r = tmp[0];
-                c = tmp[1];
-                while (r > 0 && c < this.cols) { // NE
-                    r--;
-                    c++;
-                    Coordinates candidate = new Coordinates(r, c);
-                    if (this.pieces.containsKey(candidate)){
-                        moves.add(candidate);
-                        break;
-                    }
-                }
-
-                moves.removeIf(move -> !this.pieces.containsKey(move));
-            }
-            case 'R' -> {
-                while (r < this.rows) { // S
-                    r++;
-                    Coordinates candidate = new Coordinates(r, c);
-                    if (this.pieces.containsKey(candidate)){
-                        moves.add(candidate);
-                        break;
-                    }
-                }
-                r = tmp[0];
-                while (r > 0) { // N
-                    r--;
-                    Coordinates candidate = new Coordinates(r, c);
-                    if (this.pieces.containsKey(candidate)){
-                        moves.add(candidate);
-                        break;
-                    }
-                }
-                r = tmp[0];
-                while (c < this.cols) { // E
-                    c++;
-                    Coordinates candidate = new Coordinates(r, c);
-                    if (this.pieces.containsKey(candidate)){
-                        moves.add(candidate);
-                        break;
-                    }
-                }
-                c = tmp[1];
-                while (c > 0) { // W
-                    c--;
-                    Coordinates candidate = new Coordinates(r, c);
-                    if (this.pieces.containsKey(candidate)){
-                        moves.add(candidate);
-                        break;
-                    }
-                }
-                moves.removeIf(move -> !this.pieces.containsKey(move));
-
-            }
-            case 'B' -> {
-                while (r < this.rows && c < this.cols) { // SE
-                    r++;
-                    c++;
-                    Coordinates candidate = new Coordinates(r, c);
-                    if (this.pieces.containsKey(candidate)){
-                        moves.add(candidate);
-                        break;
-                    }
-                }
-                r = tmp[0];
-                c = tmp[1];
-                while (r > 0 && c > 0) { // NW
-                    r--;
-                    c--;
-                    Coordinates candidate = new Coordinates(r, c);
-                    if (this.pieces.containsKey(candidate)){
-                        moves.add(candidate);
-                        break;
-                    }
-                }
-                r = tmp[0];
-                c = tmp[1];
-                while (r < this.rows && c > 0) { // SW
-                    r++;
-                    c--;
-                    Coordinates candidate = new Coordinates(r, c);
-                    if (this.pieces.containsKey(candidate)){
-                        moves.add(candidate);
-                        break;
-                    }
-                }
-                r = tmp[0];
-                c = tmp[1];
-                while (r > 0 && c < this.cols) { // NE
-                    r--;
-                    c++;
-                    Coordinates candidate = new Coordinates(r, c);
-                    if (this.pieces.containsKey(candidate)){
-                        moves.add(candidate);
-                        break;
-                    }
-                }
-                moves.removeIf(move -> !this.pieces.containsKey(move));
-            }
-            case 'N' -> {
-                moves.add(new Coordinates(tmp[0] + 2, tmp[1] + 1)); // 3S, 1E
-                moves.add(new Coordinates(tmp[0] - 2, tmp[1] + 1)); // 3N, 1E
-                moves.add(new Coordinates(tmp[0] + 2, tmp[1] - 1)); // 3S, 1W
-                moves.add(new Coordinates(tmp[0] - 2, tmp[1] - 1)); // 3N, 1W
-                moves.add(new Coordinates(tmp[0] + 1, tmp[1] + 2)); // 1S, 3E
-                moves.add(new Coordinates(tmp[0] - 1, tmp[1] - 2)); // 1N, 3W
-                moves.add(new Coordinates(tmp[0] - 1, tmp[1] + 2)); // 1N, 3E
-                moves.add(new Coordinates(tmp[0] + 1, tmp[1] - 2)); // 1S, 3W
-                moves.removeIf(move -> !this.pieces.containsKey(move));
-            }
-            case 'P' -> {
-                moves.add(new Coordinates(tmp[0] - 1, tmp[1] + 1)); // NE
-                moves.add(new Coordinates(tmp[0] - 1, tmp[1] - 1)); // NW
-                moves.removeIf(move -> !this.pieces.containsKey(move));
-            }
-            default -> {
-                return new HashSet<>();
-            }
+        if (src.row() < 0 || src.row() >= this.rows || src.col() < 0 || src.col() >= this.cols){
+            return moves;
+        }
+        long targets = this.moveMask(src.row() * this.cols + src.col(), token);
+        while (targets != 0){
+            int square = Long.numberOfTrailingZeros(targets);
+            moves.add(new Coordinates(square / this.cols, square % this.cols));
+            targets &= targets - 1;
         }
         return moves;
     }
 
     /**
-     * Performs the action of making one piece capture another
-     * @param src The capturing piece
-     * @param target The piece being captured
+     * Generates the squares the piece on a square can capture on, without allocating.
+     * @param square The row-major index of the piece
+     * @return One bit set for every row-major index the piece can capture on; 0 for an empty square
+     */
+    public long getMoves(int square){
+        return this.moveMask(square, (char) this.board[square]);
+    }
+
+    /**
+     * Generates the squares one piece can capture on as a bitboard.
+     * @param square The row-major index of the piece
+     * @param token The char representation of the piece
+     * @return One bit set for every square the piece can capture on
      */
-    public void takePiece(Coordinates src, Coordinates target){
-        Character attacker = this.pieces.get(src);
-        this.pieces.remove(src);
-        this.pieces.put(target, attacker);
+    private long moveMask(int square, char token){
+        return switch (token) {
+            case 'K' -> this.tables.king[square] & this.occupied;
+            case 'N' -> this.tables.knight[square] & this.occupied;
+            case 'P' -> this.tables.pawn[square] & this.occupied;
+            case 'R' -> this.slide(square, 0, 4);
+            case 'B' -> this.slide(square, 4, 8);
+            case 'Q' -> this.slide(square, 0, 8);
+            default -> 0L;
+        };
+    }
 
-        int[] srcArr = src.coordToArray();
-        int[] targetArr = target.coordToArray();
-        this.board[targetArr[0]][targetArr[1]] = this.board[srcArr[0]][srcArr[1]];
-        this.board[srcArr[0]][srcArr[1]] = EMPTY;
+    /**
+     * Scans rays outward from a square and keeps the first piece met on each.
+     * @param square The row-major index of the sliding piece
+     * @param firstRay The first ray direction to scan
+     * @param lastRay One past the last ray direction to scan
+     * @return One bit set for the first piece on every scanned ray
+     */
+    private long slide(int square, int firstRay, int lastRay){
+        long targets = 0L;
+        for (int direction = firstRay; direction < lastRay; direction++){
+            for (int step : this.tables.rays[square][direction]){
+                long bit = 1L << step;
+                if ((this.occupied & bit) != 0){
+                    targets |= bit;
+                    break;
+                }
+            }
+        }
+        return targets;
     }
 
     /**
@@ -336,10 +493,19 @@ public class ChessConfig implements Configuration {
      * @return Character representation of the desired piece. If no piece exists, returns '.'
      */
     public Character getPiece(Coordinates location){
-        if (!this.pieces.containsKey(location)){
+        if (location.row() < 0 || location.row() >= this.rows || location.col() < 0 || location.col() >= this.cols){
             return EMPTY;
         }
-        return this.pieces.get(location);
+        return this.getPiece(location.row() * this.cols + location.col());
+    }
+
+    /**
+     * Gets the piece on a square of the flat board
+     * @param square The row-major index of the square
+     * @return Char representation of the piece, '.' if the square is empty
+     */
+    public char getPiece(int square){
+        return (char) this.board[square];
     }
 
     /**
@@ -348,7 +514,7 @@ public class ChessConfig implements Configuration {
      */
     @Override
     public boolean isSolution() {
-        return this.pieces.size() == 1;
+        return Long.bitCount(this.occupied) == 1;
     }
 
     /**
@@ -357,19 +523,129 @@ public class ChessConfig implements Configuration {
      */
     @Override
     public Collection<Configuration> getNeighbors() {
-        Set<Coordinates> moves;
-        LinkedList<Configuration> configList = new LinkedList<>();
-        for (char c : PIECE_ARRAY) { // Gets the piece from the piece array
-            for (Coordinates key : this.pieces.keySet()) { // Looks through each coordinate for a match
-                if (this.pieces.get(key) == c) {
-                    moves = this.getMoves(key, c); // Construct a set of possible moves for that piece
-                    for (Coordinates move : moves) { // For each possible move, create and add a successor to the list
-                        configList.add(new ChessConfig(this, key, move));
-                    }
-                }
+        List<Configuration> configList = new ArrayList<>();
+        this.forEachNeighbor(configList::add);
+        return configList;
+    }
+
+    /**
+     * Hands each neighbor of the current configuration to an action without collecting them
+     * @param action Called once with each neighbor, in the same order as getNeighbors
+     */
+    @Override
+    public void forEachNeighbor(Consumer<? super Configuration> action) {
+        long remaining = this.occupied;
+        while (remaining != 0) { // Looks through each occupied square
+            int square = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            long targets = this.moveMask(square, (char) this.board[square]);
+            while (targets != 0) { // For each possible capture, create and hand over a successor
+                int target = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                action.accept(new ChessConfig(this, square, target));
             }
         }
-        return configList;
+    }
+
+    /**
+     * Of this board and its mirror images, the one with the smallest hash
+     * stands in for all of them. Every piece moves the same way in a
+     * left-right mirror; a top-bottom mirror is only used once no pawns
+     * are left, since pawns capture upwards.
+     * @return a key shared by this configuration and its mirror images
+     */
+    @Override
+    public Object canonicalKey() {
+        int[] best = this.smallestMirror();
+        long bestHash = best == null ? this.zobrist : this.mirrorHash(best);
+        byte[] squares = new byte[this.rows * this.cols];
+        long remaining = this.occupied;
+        while (remaining != 0){
+            int square = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            squares[best == null ? square : best[square]] = this.board[square];
+        }
+        return new MirrorKey(bestHash, squares);
+    }
+
+    /**
+     * The Zobrist hash of the board chosen by canonicalKey, without building the key
+     * @return a hash shared by this configuration and its mirror images
+     */
+    long canonicalHash() {
+        int[] best = this.smallestMirror();
+        return best == null ? this.zobrist : this.mirrorHash(best);
+    }
+
+    /**
+     * Finds the mirror image with the smallest hash
+     * @return the square mapping of that mirror, or null if the board itself has the smallest hash
+     */
+    private int[] smallestMirror() {
+        boolean pawns = false;
+        long remaining = this.occupied;
+        while (remaining != 0 && !pawns){
+            int square = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            pawns = this.board[square] == 'P';
+        }
+        int[] best = null;
+        long bestHash = this.zobrist;
+        for (int m = 0; m < (pawns ? 1 : this.tables.mirrors.length); m++){
+            long hash = this.mirrorHash(this.tables.mirrors[m]);
+            if (hash < bestHash){
+                best = this.tables.mirrors[m];
+                bestHash = hash;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param mirror A square mapping from the move tables
+     * @return The Zobrist hash of the board's mirror image
+     */
+    private long mirrorHash(int[] mirror) {
+        long hash = 0L;
+        long remaining = this.occupied;
+        while (remaining != 0){
+            int square = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            hash ^= this.tables.key(mirror[square], (char) this.board[square]);
+        }
+        return hash;
+    }
+
+    /**
+     * Gets the number of pieces left on the board
+     * @return The number of pieces
+     */
+    public int getPieceCount() {
+        return Long.bitCount(this.occupied);
+    }
+
+    /**
+     * Rates how promising the board is for a depth-first search: boards
+     * with fewer stranded pieces, which neither attack nor are attacked,
+     * and more captures available come first.
+     * @return A score, lower for more promising boards
+     */
+    int searchOrder() {
+        long attacked = 0L;
+        long idle = 0L;
+        int captures = 0;
+        long remaining = this.occupied;
+        while (remaining != 0){
+            int square = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            long targets = this.moveMask(square, (char) this.board[square]);
+            if (targets == 0){
+                idle |= 1L << square;
+            }
+            attacked |= targets;
+            captures += Long.bitCount(targets);
+        }
+        return Long.bitCount(idle & ~attacked) * Long.SIZE * Long.SIZE - captures;
     }
 
     /**
@@ -382,12 +658,7 @@ public class ChessConfig implements Configuration {
         result.append(System.lineSeparator());
         for (int r = 0; r < rows; r++){
             for (int c = 0; c < cols; c++){
-                Coordinates location = new Coordinates(r, c);
-                if (this.pieces.containsKey(location)){
-                    result.append(this.pieces.get(location)).append(" ");
-                } else {
-                    result.append(EMPTY).append(" ");
-                }
+                result.append((char) this.board[r * cols + c]).append(" ");
             }
             result.append(System.lineSeparator());
         }
@@ -400,7 +671,7 @@ public class ChessConfig implements Configuration {
      */
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(this.board);
+        return Long.hashCode(this.zobrist);
     }
 
     /**
@@ -411,7 +682,11 @@ public class ChessConfig implements Configuration {
     @Override
     public boolean equals(Object other) {
         if (other instanceof ChessConfig o){
-            return this.hashCode() == o.hashCode();
+            return this.zobrist == o.zobrist
+                    && this.rows == o.rows
+                    && this.cols == o.cols
+                    && this.occupied == o.occupied
+                    && Arrays.equals(this.board, o.board);
         }
         return false;
     }
@@ -3,14 +3,17 @@ package puzzles.chess.model;
 import puzzles.common.Coordinates;
 import puzzles.common.Observer;
 import puzzles.common.solver.Configuration;
-import puzzles.common.solver.Solver;
+import puzzles.common.solver.SolutionCache;
 import puzzles.hoppers.model.HoppersConfig;
 
 import java.io.IOException;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Model for the PTUI and GUI of the chess puzzle
@@ -18,11 +21,27 @@ import java.util.Set;
  */
 
 public class ChessModel {
-    /** the collection of observers of this model */
-    private final List<Observer<ChessModel, String>> observers = new LinkedList<>();
+    /** the least time in milliseconds between two progress messages of a hint */
+    private static final long PROGRESS_INTERVAL = 250;
+    /** bytes of solved paths remembered when no budget is given */
+    public static final long DEFAULT_CACHE_BYTES = 8L << 20;
+    /** rough size of one configuration, for the solution cache budget: the object and its flat board */
+    private static final int CONFIG_BYTES = 128;
+    /**
+     * runs hint solves one at a time off the UI thread, so a cancelled
+     * solve has stopped before the next one starts
+     */
+    private static final ExecutorService HINTS = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "chess-hint");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** the collection of observers of this model, alerted from the hint thread too */
+    private final List<Observer<ChessModel, String>> observers = new CopyOnWriteArrayList<>();
 
     /** the current configuration */
-    private ChessConfig currentConfig;
+    private volatile ChessConfig currentConfig;
 
     /**
      * the coordinate location of the current selected piece
@@ -35,9 +54,26 @@ public class ChessModel {
     private boolean firstSelect;
 
     /**
-     * Common BFS solver for generating the current path
+     * depth-first solver of the hint in progress; null when there is none
+     */
+    private ChessSolver hintSolver;
+
+    /**
+     * Holds the boards proven dead by earlier hints; every hint's solver
+     * shares its table. Hints are solved one at a time, so they never use
+     * the table together.
+     */
+    private final ChessSolver deadBoards = new ChessSolver();
+
+    /**
+     * the hint in progress, or null
+     */
+    private CompletableFuture<Void> pendingHint;
+
+    /**
+     * Solved paths, so following a hint never solves again
      */
-    private Solver solver;
+    private final SolutionCache solutions;
 
     /**
      * Name of the file currently being used
@@ -69,24 +105,71 @@ public class ChessModel {
      * @throws IOException invalid file name or file does not exist
      */
     public ChessModel(String filename) throws IOException {
+        this(filename, DEFAULT_CACHE_BYTES);
+    }
+
+    /**
+     * Constructor method
+     * @param filename Name of the file that the user wants to use
+     * @param cacheBytes Most bytes of solved paths to remember for hints
+     * @throws IOException invalid file name or file does not exist
+     */
+    public ChessModel(String filename, long cacheBytes) throws IOException {
+        this.solutions = new SolutionCache(cacheBytes, CONFIG_BYTES);
         System.out.println("Loaded: " + filename);
         this.currentFile = filename;
         this.currentConfig = new ChessConfig(currentFile);
         this.currentPiece = new Coordinates(0,0);
-        this.solver = new Solver();
         this.firstSelect = true;
         System.out.println(this);
     }
 
     /**
-     * Advances the puzzle to the next step for the user, if there is a valid solution to the puzzle
+     * Replaces the current configuration
+     * @param config the new configuration
+     */
+    private synchronized void setConfig(ChessConfig config){
+        this.currentConfig = config;
+    }
+
+    /**
+     * Applies a hint, unless the board changed while it was being solved
+     * @param from the configuration the hint was solved for
+     * @param to the next step
+     * @return True if the hint was applied, false otherwise
      */
-    public void getHint(){
-        List<Configuration> path = solver.solve(currentConfig);
+    private synchronized boolean advance(ChessConfig from, ChessConfig to){
+        if (this.currentConfig != from){
+            return false;
+        }
+        this.currentConfig = to;
+        return true;
+    }
+
+    /**
+     * Stops the hint in progress, if any. Its observers hear nothing more from it.
+     */
+    public void cancelHint(){
+        if (this.hintSolver != null){
+            this.hintSolver.cancel();
+            this.pendingHint.cancel(false);
+            this.hintSolver = null;
+            this.pendingHint = null;
+        }
+    }
+
+    /**
+     * Moves to the next step of a path and alerts observers, unless the board changed since
+     * the path was found
+     * @param start Configuration the path starts from
+     * @param path Shortest path, empty if there is none
+     */
+    private void showHint(ChessConfig start, List<Configuration> path){
         if (path.size() != 0){
             if (path.size() > 1){
-                this.currentConfig = (ChessConfig) path.get(1);
-                this.alertObservers("Next step!");
+                if (advance(start, (ChessConfig) path.get(1))){
+                    this.alertObservers("Next step!");
+                }
             }
             else {
                 this.alertObservers("Puzzle already solved!");
@@ -97,11 +180,48 @@ public class ChessModel {
         }
     }
 
+    /**
+     * Advances the puzzle to the next step for the user, if there is a valid solution to the puzzle.
+     * A board on a path solved before is answered at once from the solution cache. Otherwise a
+     * depth-first solve runs on a background thread, skipping boards earlier hints proved dead;
+     * observers are told "Solving..." while a long one runs
+     * and the outcome at the end, both from that thread. Any earlier hint is cancelled, and so is
+     * this one if the user selects, loads or resets before it finishes.
+     * @return future that completes once observers have been told the outcome
+     */
+    public CompletableFuture<Void> getHint(){
+        cancelHint();
+        ChessConfig start = this.currentConfig;
+        List<Configuration> known = this.solutions.lookup(start);
+        if (known != null){
+            showHint(start, known);
+            return CompletableFuture.completedFuture(null);
+        }
+        ChessSolver solver = new ChessSolver(this.deadBoards);
+        long[] lastProgress = {System.currentTimeMillis()};
+        solver.setProgress(unique -> {
+            long now = System.currentTimeMillis();
+            if (now - lastProgress[0] >= PROGRESS_INTERVAL){
+                lastProgress[0] = now;
+                this.alertObservers("Solving... " + unique + " configurations");
+            }
+        });
+        CompletableFuture<Void> hint = CompletableFuture.supplyAsync(() -> solver.solve(start), HINTS)
+                .thenAccept(path -> {
+                    this.solutions.put(start, path);
+                    showHint(start, path);
+                });
+        this.hintSolver = solver;
+        this.pendingHint = hint;
+        return hint;
+    }
+
     /**
      * Selects the piece chosen by the user
      * @param cmdStr String of the user's command follows format: "s(elect) ROW COL"
      */
     public void select(String cmdStr){
+        cancelHint();
         String[] fields = cmdStr.split("\\s+");
         Coordinates coordinates = new Coordinates(fields[1], fields[2]);
         if (firstSelect){
@@ -123,14 +243,15 @@ public class ChessModel {
      * @param cmdStr String of the user's command follows format: "l(oad) FILEPATH"
      */
     public void load(String cmdStr) {
+        cancelHint();
         String[] fields = cmdStr.split("\\s+");
         this.currentFile = fields[1];
         ChessConfig lastConfig = this.currentConfig;
         try {
-            this.currentConfig = new ChessConfig(this.currentFile);
+            setConfig(new ChessConfig(this.currentFile));
             this.alertObservers("Loaded: " + this.currentFile);
         } catch (IOException e){
-            this.currentConfig = lastConfig;
+            setConfig(lastConfig);
             this.alertObservers("Failed to load: " + this.currentFile);
         }
     }
@@ -149,7 +270,8 @@ public class ChessModel {
      * @param dest Coordinates of the piece being captured
      */
     public void capture(Coordinates src, Coordinates dest){
-        this.currentConfig = new ChessConfig(this.currentConfig, src, dest);
+        cancelHint();
+        setConfig(new ChessConfig(this.currentConfig, src, dest));
         this.alertObservers("Captured from " + src + " to " + dest);
     }
 
@@ -191,6 +313,14 @@ public class ChessModel {
         return true;
     }
 
+    /**
+     * Gets the current configuration
+     * @return the current configuration
+     */
+    public ChessConfig getCurrentConfig(){
+        return this.currentConfig;
+    }
+
     /**
      * Generates a string representation of the board
      * @return string representation of the board
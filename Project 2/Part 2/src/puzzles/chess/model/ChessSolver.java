@@ -0,0 +1,334 @@
+package puzzles.chess.model;
+
+import puzzles.common.solver.Configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Depth-first solver for solitaire chess. Every move captures a piece, so
+ * every solution takes exactly one move fewer than there are pieces, and
+ * the first solution a depth-first search finds is as short as any. Only
+ * the current line of play is kept, instead of every layer of a BFS.
+ * <p>
+ * Boards proven to have no solution are remembered in a fixed-size
+ * transposition table keyed by the board's canonical Zobrist hash, so a
+ * board reached again by another order of captures, or as a mirror image,
+ * is skipped at once. Each bucket holds two boards: one slot keeps the
+ * board with the most pieces, whose subtree cost the most to search, and
+ * the other always takes the newest. A false match needs two different
+ * boards with the same 64 bit hash.
+ * <p>
+ * At every step the captures are tried most promising first, see
+ * {@link ChessConfig#searchOrder()}.
+ *
+ * @author Alex Eng
+ */
+
+public class ChessSolver {
+    /**
+     * number of boards the dead-board table holds when no size is given
+     */
+    public static final int TABLE_SIZE = 1 << 20;
+    /**
+     * expansions between two progress reports
+     */
+    private static final int PROGRESS_EXPANSIONS = 1 << 14;
+
+    /**
+     * The boards known to have no solution. Shared by solvers made from one
+     * another, which must not solve at the same time.
+     */
+    private static final class DeadTable {
+        /**
+         * canonical hashes of dead boards, two per bucket, 0 where empty
+         */
+        private final long[] hashes;
+        /**
+         * the number of pieces on each stored board
+         */
+        private final byte[] pieces;
+        /**
+         * the board size the stored hashes belong to, since equal squares
+         * of different sizes share Zobrist keys
+         */
+        private int rows = -1;
+        private int cols = -1;
+        /**
+         * boards stored since the table was last cleared
+         */
+        private int stored;
+
+        /**
+         * @param size the number of boards, rounded up to an even power of two
+         */
+        private DeadTable(int size) {
+            int capacity = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+            this.hashes = new long[capacity];
+            this.pieces = new byte[capacity];
+        }
+
+        /**
+         * Forget every board if the next solve is on a board of a different size
+         * @param rows The number of rows of the next board
+         * @param cols The number of cols of the next board
+         */
+        private void use(int rows, int cols) {
+            if (rows != this.rows || cols != this.cols) {
+                Arrays.fill(this.hashes, 0L);
+                this.rows = rows;
+                this.cols = cols;
+                this.stored = 0;
+            }
+        }
+
+        /**
+         * @param hash A canonical hash, never 0
+         * @return the first slot of the hash's bucket
+         */
+        private int bucket(long hash) {
+            return (int) (hash ^ (hash >>> 32)) & (this.hashes.length - 2);
+        }
+
+        /**
+         * @param hash A canonical hash, never 0
+         * @return whether the board with that hash is known to be dead
+         */
+        private boolean contains(long hash) {
+            int slot = bucket(hash);
+            return this.hashes[slot] == hash || this.hashes[slot + 1] == hash;
+        }
+
+        /**
+         * Remember a dead board
+         * @param hash Its canonical hash, never 0
+         * @param count The number of pieces on it
+         */
+        private void add(long hash, int count) {
+            int slot = bucket(hash);
+            if (this.hashes[slot] != 0 && count < this.pieces[slot]) {
+                // the first slot keeps the larger subtree
+                slot += 1;
+            }
+            if (this.hashes[slot] == 0) {
+                this.stored += 1;
+            }
+            this.hashes[slot] = hash;
+            this.pieces[slot] = (byte) count;
+        }
+    }
+
+    /**
+     * the dead boards, possibly shared with other solvers
+     */
+    private final DeadTable dead;
+    /**
+     * for each depth of the current line, the captures from the board there
+     */
+    private final List<List<Configuration>> moves = new ArrayList<>();
+    /**
+     * for each depth, adds a capture to that depth's list
+     */
+    private final List<Consumer<Configuration>> collectors = new ArrayList<>();
+    /**
+     * for each depth, the order scores of that depth's captures
+     */
+    private final List<int[]> scores = new ArrayList<>();
+    /**
+     * set from any thread to stop the solve in progress
+     */
+    private volatile boolean cancelled;
+    /**
+     * told the number of boards expanded so far every few thousand expansions, or null
+     */
+    private IntConsumer progress;
+    private int totalConfigs;
+    /**
+     * the number of boards expanded in the last solve
+     */
+    private int expansions;
+    /**
+     * the number of boards skipped in the last solve because the table knew them to be dead
+     */
+    private int deadHits;
+
+    /**
+     * Create a solver with a dead-board table of the default size
+     */
+    public ChessSolver() {
+        this(TABLE_SIZE);
+    }
+
+    /**
+     * Create a solver with its own dead-board table
+     * @param tableSize the number of boards the table holds, rounded up to a power of two
+     */
+    public ChessSolver(int tableSize) {
+        this.dead = new DeadTable(tableSize);
+    }
+
+    /**
+     * Create a solver that shares the dead-board table of another, so what
+     * one proved dead the other skips. The two must not solve at the same time.
+     * @param other the solver whose table to share
+     */
+    public ChessSolver(ChessSolver other) {
+        this.dead = other.dead;
+    }
+
+    /**
+     * Stop the solve in progress, and every later one, with a
+     * CancellationException. Safe to call from any thread. Boards already
+     * proven dead stay in the table.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * Listen to how far each solve has got. The listener is called on the
+     * solving thread every few thousand expansions.
+     * @param progress told the number of boards expanded so far, or null for none
+     */
+    public void setProgress(IntConsumer progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Find a line of captures down to a single piece
+     * @param start The starting board
+     * @return the boards from the start to the solution, empty if there is none
+     * @throws CancellationException if the solver is cancelled before it finishes
+     */
+    public List<Configuration> solve(ChessConfig start) {
+        int[] dimensions = start.getDimensions();
+        this.dead.use(dimensions[0], dimensions[1]);
+        this.totalConfigs = 1;
+        this.expansions = 0;
+        this.deadHits = 0;
+        LinkedList<Configuration> path = new LinkedList<>();
+        path.add(start);
+        boolean found = search(path, start, 0);
+        for (List<Configuration> depth : this.moves) {
+            depth.clear();
+        }
+        return found ? path : new LinkedList<>();
+    }
+
+    /**
+     * Depth-first search below the last board of the path
+     * @param path The boards from the start to the current one
+     * @param current The current board
+     * @param depth The number of captures made so far
+     * @return whether a solution was found; the path then ends with it
+     */
+    private boolean search(LinkedList<Configuration> path, ChessConfig current, int depth) {
+        if (current.isSolution()) {
+            return true;
+        }
+        if (this.cancelled) {
+            throw new CancellationException("Solve cancelled");
+        }
+        long hash = current.canonicalHash();
+        if (hash == 0) {
+            // 0 marks an empty slot
+            hash = 1;
+        }
+        if (this.dead.contains(hash)) {
+            this.deadHits += 1;
+            return false;
+        }
+        this.expansions += 1;
+        if (this.progress != null && this.expansions % PROGRESS_EXPANSIONS == 0) {
+            this.progress.accept(this.expansions);
+        }
+
+        if (this.moves.size() == depth) {
+            List<Configuration> list = new ArrayList<>();
+            this.moves.add(list);
+            this.collectors.add(list::add);
+            this.scores.add(new int[0]);
+        }
+        List<Configuration> captures = this.moves.get(depth);
+        captures.clear();
+        current.forEachNeighbor(this.collectors.get(depth));
+        this.totalConfigs += captures.size();
+        order(captures, depth);
+
+        for (int i = 0; i < captures.size(); i++) {
+            ChessConfig next = (ChessConfig) captures.get(i);
+            path.addLast(next);
+            if (search(path, next, depth + 1)) {
+                return true;
+            }
+            path.removeLast();
+        }
+        this.dead.add(hash, current.getPieceCount());
+        return false;
+    }
+
+    /**
+     * Sort captures most promising first. There are seldom more than a few
+     * dozen, so an insertion sort on the scores is enough.
+     * @param captures The captures from one board
+     * @param depth The depth they were made at, for the score scratch space
+     */
+    private void order(List<Configuration> captures, int depth) {
+        int[] score = this.scores.get(depth);
+        if (score.length < captures.size()) {
+            score = new int[captures.size() * 2];
+            this.scores.set(depth, score);
+        }
+        for (int i = 0; i < captures.size(); i++) {
+            ChessConfig capture = (ChessConfig) captures.get(i);
+            int value = capture.isSolution() ? Integer.MIN_VALUE : capture.searchOrder();
+            int j = i;
+            while (j > 0 && score[j - 1] > value) {
+                score[j] = score[j - 1];
+                captures.set(j, captures.get(j - 1));
+                j -= 1;
+            }
+            score[j] = value;
+            captures.set(j, capture);
+        }
+    }
+
+    public void configsPrint() {
+        System.out.println("Total Configs: " + this.totalConfigs);
+        System.out.println("Unique Configs: " + this.expansions);
+        System.out.println("Dead Hits: " + this.deadHits);
+    }
+
+    /**
+     * @return the number of boards generated in the last solve
+     */
+    public int getTotalConfigs() {
+        return this.totalConfigs;
+    }
+
+    /**
+     * @return the number of boards expanded in the last solve
+     */
+    public int getExpansions() {
+        return this.expansions;
+    }
+
+    /**
+     * @return the number of boards skipped in the last solve because they were known to be dead
+     */
+    public int getDeadHits() {
+        return this.deadHits;
+    }
+
+    /**
+     * @return the number of dead boards in the table
+     */
+    public int getStoredBoards() {
+        return this.dead.stored;
+    }
+}
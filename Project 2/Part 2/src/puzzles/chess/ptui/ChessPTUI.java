@@ -65,7 +65,7 @@ public class ChessPTUI implements Observer<ChessModel, String> {
                 if (words[0].startsWith("q")) {
                     break;
                 } else if (words[0].startsWith("h")) {
-                    this.model.getHint();
+                    this.model.getHint().join();
                 } else if (words[0].startsWith("l")) {
                     this.model.load(line);
                 } else if (words[0].startsWith("s")) {
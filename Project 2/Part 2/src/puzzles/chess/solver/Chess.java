@@ -1,26 +1,33 @@
 package puzzles.chess.solver;
 
 import puzzles.chess.model.ChessConfig;
+import puzzles.chess.model.ChessSolver;
 import puzzles.common.solver.Configuration;
 import puzzles.common.solver.Solver;
 
 import java.io.IOException;
-import java.util.Collection;
-import java.util.LinkedList;
+import java.util.List;
 
 public class Chess {
     public static void main(String[] args) {
-        if (args.length != 1) {
-            System.out.println("Usage: java Chess filename");
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Usage: java Chess filename [bfs|dfs]");
         } else {
             try {
-                Configuration start = new ChessConfig(args[0]);
-                Solver solver = new Solver();
-                Collection<Configuration> path = solver.solve(start);
-                solver.configsPrint();
+                ChessConfig start = new ChessConfig(args[0]);
+                List<Configuration> path;
+                if (args.length > 1 && args[1].equals("dfs")){
+                    ChessSolver solver = new ChessSolver();
+                    path = solver.solve(start);
+                    solver.configsPrint();
+                } else {
+                    Solver solver = new Solver();
+                    path = solver.solve(start);
+                    solver.configsPrint();
+                }
                 for (int i = 0; i < (path).size(); i++){
                     System.out.println("Step " + i + ": ");
-                    System.out.println(((LinkedList<Configuration>)path).get(i));
+                    System.out.println(path.get(i));
                 }
 
             } catch (IOException e){}
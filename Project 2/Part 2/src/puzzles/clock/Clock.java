@@ -1,25 +1,35 @@
 package puzzles.clock;
 
 import puzzles.common.solver.Configuration;
+import puzzles.common.solver.IDAStarSolver;
+import puzzles.common.solver.ReversibleConfiguration;
 import puzzles.common.solver.Solver;
 
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.function.Consumer;
 
 public class Clock {
     public static void main(String[] args) {
         if (args.length < 2) {
-            System.out.println(("Usage: java Clock hours stop end"));
+            System.out.println(("Usage: java Clock hours stop end [bfs|ida|ida-tt]"));
         } else {
             int hours = Integer.parseInt(args[0]);
             int start = Integer.parseInt(args[1]);
             int end = Integer.parseInt(args[2]);
             ClockConfig clockConfig = new ClockConfig(hours, start, end);
-            Solver solver = new Solver();
             System.out.println("Hours: " + hours + ", Start: " + start + ", End: " + end );
             int step = 0;
-            Collection<Configuration> path = solver.solve(clockConfig);
-            solver.configsPrint();
+            Collection<Configuration> path;
+            if (args.length > 3 && args[3].startsWith("ida")){
+                IDAStarSolver solver = new IDAStarSolver(args[3].equals("ida-tt") ? IDAStarSolver.TABLE_SIZE : 0);
+                path = solver.solve(clockConfig);
+                solver.configsPrint();
+            } else {
+                Solver solver = new Solver();
+                path = solver.solveBidirectional(clockConfig);
+                solver.configsPrint();
+            }
             if (path.size() == 0){
                 System.out.println("No solution");
                 return;
@@ -31,15 +41,22 @@ public class Clock {
         }
     }
 
-    public static class ClockConfig implements Configuration {
+    /**
+     * One position of the hand. A small value type: three ints, a hash
+     * worked out once, and the neighbors built the first time they are
+     * asked for and then handed back on every later call.
+     */
+    public static class ClockConfig implements ReversibleConfiguration {
         /** Total number of hours on the clock */
         private final int hours;
         /** The start hour */
         private final int start;
         /** The destination hour */
         private final int end;
-        /** The list of neighbors of the current hour */
-        private final Collection<Configuration> neighbors = new LinkedList<>();
+        /** The hash code, worked out once by the constructor */
+        private final int hash;
+        /** The hours one forward and one back, null until getNeighbors is first called */
+        private List<Configuration> neighbors;
 
         /**
          * Constructor that initialize start, end, and hours.
@@ -51,6 +68,7 @@ public class Clock {
             this.hours = hours;
             this.start = start;
             this.end = end;
+            this.hash = (31 * hours + start) * 31 + end;
         }
 
         /**
@@ -62,23 +80,74 @@ public class Clock {
         }
 
         /**
-         * @return generate and return a list of neighbors of the current configuration.
+         * @param step 1 to turn the hand forward, -1 to turn it back
+         * @return the configuration with the hand turned one hour
+         */
+        private ClockConfig turn(int step){
+            int hour = (start + step) % hours;
+            if (hour == 0){
+                hour = hours;
+            }
+            return new ClockConfig(hours, hour, end);
+        }
+
+        /**
+         * The list is built on the first call and the same one is returned
+         * on every later call.
+         * @return the unmodifiable list of neighbors of the current configuration.
          */
         @Override
         public Collection<Configuration> getNeighbors() {
-            int moreStart = (start + 1) % hours;
-            int lessStart = (start - 1) % hours;
-            if (moreStart == 0){
-                moreStart = hours;
+            // List.of only has final fields, so the list is safe to share between threads
+            if (this.neighbors == null){
+                this.neighbors = List.of(turn(1), turn(-1));
             }
-            if (lessStart == 0){
-                lessStart = hours;
+            return this.neighbors;
+        }
+
+        /**
+         * Hand the hours one forward and one back to an action. Uses the
+         * neighbors from getNeighbors if they were already built; otherwise
+         * makes them without keeping them, since a solver expands each
+         * configuration once and keeping them would pin every duplicate.
+         * @param action called once with each neighbor of the current configuration
+         */
+        @Override
+        public void forEachNeighbor(Consumer<? super Configuration> action) {
+            List<Configuration> built = this.neighbors;
+            if (built != null){
+                built.forEach(action);
+                return;
             }
+            action.accept(turn(1));
+            action.accept(turn(-1));
+        }
 
-            this.neighbors.add(new ClockConfig(hours, moreStart, end));
-            this.neighbors.add(new ClockConfig(hours, lessStart, end));
+        /**
+         * Turning the hand forward or backward is undone by turning it the
+         * other way, so the predecessors are the same hours as the neighbors.
+         * @return the unmodifiable list of predecessors of the current configuration.
+         */
+        @Override
+        public Collection<Configuration> getPredecessors() {
+            return getNeighbors();
+        }
 
-            return this.neighbors;
+        /**
+         * @return the configuration with the hand on the end hour
+         */
+        @Override
+        public ReversibleConfiguration getGoal() {
+            return new ClockConfig(hours, end, end);
+        }
+
+        /**
+         * @return the fewest hours the hand must turn, either way around the clock
+         */
+        @Override
+        public int heuristic() {
+            int distance = Math.abs(this.start - this.end);
+            return Math.min(distance, this.hours - distance);
         }
 
         /**
@@ -88,7 +157,7 @@ public class Clock {
         @Override
         public boolean equals(Object other) {
             if (other instanceof ClockConfig o){
-                return this.start == o.start && this.end == o.end && this.hours == o.hours;
+                return this.hash == o.hash && this.start == o.start && this.end == o.end && this.hours == o.hours;
             }
             return false;
         }
@@ -98,7 +167,7 @@ public class Clock {
          */
         @Override
         public int hashCode() {
-            return this.start + this.end + this.hours;
+            return this.hash;
         }
 
         /**
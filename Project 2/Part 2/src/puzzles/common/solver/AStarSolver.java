@@ -0,0 +1,170 @@
+package puzzles.common.solver;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Best-first solver that always expands the configuration with the lowest
+ * moves so far plus {@link Configuration#heuristic()}. With an admissible
+ * heuristic the path found is as short as the one from the BFS
+ * {@link Solver}, while far fewer configurations are stored.
+ *
+ * @author Nam Huynh
+ */
+
+public class AStarSolver {
+    private int totalConfigs;
+    private int uniqueConfigs;
+    /**
+     * the number of distinct configurations found dead and never queued in the last solve
+     */
+    private int prunedConfigs;
+    /**
+     * the number of configurations taken off the open queue in the last solve
+     */
+    private int expansions;
+    /**
+     * what the last solve did, null before the first solve
+     */
+    private SolverMetrics metrics;
+
+    /**
+     * A configuration waiting in the open queue
+     * @param config the configuration
+     * @param cost number of moves from the start
+     * @param estimate cost plus the heuristic
+     * @param order when it was queued, so remaining ties are broken first come first served
+     */
+    private record Entry(Configuration config, int cost, int estimate, long order) {}
+
+    /**
+     * Generate the shortest path to the desired destination using A*
+     * @param start the starting configuration
+     * @return the shortest path to the desired destination
+     */
+    public List<Configuration> solve (Configuration start){
+        // on equal estimates prefer the deeper configuration, it is closer to a solution
+        PriorityQueue<Entry> open = new PriorityQueue<>(Comparator.comparingInt(Entry::estimate)
+                .thenComparing(Comparator.comparingInt(Entry::cost).reversed())
+                .thenComparingLong(Entry::order));
+        // both keyed by canonical key, so symmetric twins share one entry
+        Map<Object, Configuration> predecessors = new HashMap<>();
+        Map<Object, Integer> costs = new HashMap<>();
+        long order = 0;
+        // refilled by every expansion, so no collection is built per configuration
+        List<Configuration> neighbors = new ArrayList<>();
+        Consumer<Configuration> collect = neighbors::add;
+        metrics = new SolverMetrics("astar");
+        open.add(new Entry(start, 0, start.heuristic(), order++));
+        predecessors.put(start.canonicalKey(), null);
+        costs.put(start.canonicalKey(), 0);
+        totalConfigs = 1;
+        uniqueConfigs = 1;
+        prunedConfigs = 0;
+        expansions = 0;
+
+        while (!open.isEmpty()){
+            metrics.frontier(open.size());
+            Entry entry = open.remove();
+            Configuration current = entry.config();
+            if (entry.cost() > costs.get(current.canonicalKey())){
+                // a shorter way here was queued after this one
+                continue;
+            }
+            expansions += 1;
+            metrics.expanded();
+            if (current.isSolution()){
+                List<Configuration> path = new LinkedList<>();
+                while (current != null) {
+                    path.add(0, current);
+                    current = predecessors.get(current.canonicalKey());
+                }
+                return finish(path, costs.size());
+            }
+            int cost = entry.cost() + 1;
+            long began = System.nanoTime();
+            neighbors.clear();
+            current.forEachNeighbor(collect);
+            long generatedAt = System.nanoTime();
+            for (Configuration configuration: neighbors){
+                totalConfigs += 1;
+                Object key = configuration.canonicalKey();
+                Integer known = costs.get(key);
+                metrics.generated(known != null && cost >= known);
+                if (known == null && configuration.isDead()){
+                    // given an unreachable cost so it is not tested again
+                    costs.put(key, -1);
+                    prunedConfigs += 1;
+                    metrics.pruned(1);
+                    continue;
+                }
+                if (known == null || cost < known){
+                    if (known == null){
+                        uniqueConfigs += 1;
+                    }
+                    costs.put(key, cost);
+                    predecessors.put(key, current);
+                    open.add(new Entry(configuration, cost, cost + configuration.heuristic(), order++));
+                }
+            }
+            metrics.neighborTime(generatedAt - began);
+            metrics.visitedTime(System.nanoTime() - generatedAt);
+        }
+        return finish(new LinkedList<>(), costs.size());
+    }
+
+    /**
+     * Record the end of a solve in the metrics
+     * @param path the path about to be returned
+     * @param visited the number of configurations with a known cost
+     * @return the path
+     */
+    private List<Configuration> finish(List<Configuration> path, int visited){
+        metrics.visited(visited);
+        metrics.finish(path);
+        return path;
+    }
+
+    public void configsPrint(){
+        System.out.println("Total Configs: " + totalConfigs);
+        System.out.println("Unique Configs: " + uniqueConfigs);
+        if (prunedConfigs > 0){
+            System.out.println("Pruned Configs: " + prunedConfigs);
+        }
+    }
+
+    /**
+     * @return the number of configurations generated in the last solve
+     */
+    public int getTotalConfigs(){
+        return totalConfigs;
+    }
+
+    /**
+     * @return the number of distinct configurations seen in the last solve
+     */
+    public int getUniqueConfigs(){
+        return uniqueConfigs;
+    }
+
+    /**
+     * @return the number of configurations expanded in the last solve
+     */
+    public int getExpansions(){
+        return expansions;
+    }
+
+    /**
+     * @return the number of distinct configurations found dead and never queued in the last solve
+     */
+    public int getPrunedConfigs(){
+        return prunedConfigs;
+    }
+
+    /**
+     * @return what the last solve did, or null if nothing has been solved yet
+     */
+    public SolverMetrics getMetrics(){
+        return metrics;
+    }
+}
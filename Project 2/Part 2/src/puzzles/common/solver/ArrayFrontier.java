@@ -0,0 +1,115 @@
+package puzzles.common.solver;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A frontier backed by a growable circular array. Adding and removing are
+ * both O(1) and, unlike a linked list, no node is allocated per configuration.
+ *
+ * @author Nam Huynh
+ */
+
+public class ArrayFrontier implements Frontier {
+    /**
+     * the capacity used when none is given
+     */
+    private static final int DEFAULT_CAPACITY = 64;
+    /**
+     * the slots of the ring buffer
+     */
+    private Configuration[] elements;
+    /**
+     * index of the oldest configuration
+     */
+    private int head;
+    /**
+     * number of configurations currently stored
+     */
+    private int size;
+
+    /**
+     * Create an empty frontier with the default capacity
+     */
+    public ArrayFrontier() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create an empty frontier
+     * @param capacity the initial number of slots, rounded up to a power of two
+     */
+    public ArrayFrontier(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.elements = new Configuration[slots];
+    }
+
+    /**
+     * Add a configuration to the back, doubling the array when it is full
+     * @param configuration the configuration to add
+     */
+    @Override
+    public void add(Configuration configuration) {
+        if (size == elements.length) {
+            grow();
+        }
+        elements[(head + size) & (elements.length - 1)] = configuration;
+        size++;
+    }
+
+    /**
+     * Remove and return the configuration at the front
+     * @return the oldest configuration
+     * @throws NoSuchElementException if the frontier is empty
+     */
+    @Override
+    public Configuration remove() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        Configuration first = elements[head];
+        elements[head] = null;
+        head = (head + 1) & (elements.length - 1);
+        size--;
+        return first;
+    }
+
+    /**
+     * @return whether the frontier is empty
+     */
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of configurations in the frontier
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empty the frontier, keeping the current capacity
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            elements[(head + i) & (elements.length - 1)] = null;
+        }
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Double the capacity, unwrapping the ring so the front is at index 0
+     */
+    private void grow() {
+        Configuration[] bigger = new Configuration[elements.length << 1];
+        int firstPart = elements.length - head;
+        System.arraycopy(elements, head, bigger, 0, firstPart);
+        System.arraycopy(elements, 0, bigger, firstPart, head);
+        elements = bigger;
+        head = 0;
+    }
+}
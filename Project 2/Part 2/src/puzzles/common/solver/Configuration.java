@@ -1,6 +1,7 @@
 package puzzles.common.solver;
 
 import java.util.Collection;
+import java.util.function.Consumer;
 
 public interface Configuration {
     boolean isSolution();
@@ -8,4 +9,49 @@ public interface Configuration {
     boolean equals(Object other);
     int hashCode();
     String toString();
+
+    /**
+     * Hand each neighbor to an action as it is generated, in the same order
+     * getNeighbors lists them, without building a collection. The solvers
+     * use this in preference to getNeighbors, so puzzles that generate
+     * neighbors one at a time should override it.
+     * @param action called once with each neighbor
+     */
+    default void forEachNeighbor(Consumer<? super Configuration> action) {
+        for (Configuration neighbor : getNeighbors()) {
+            action.accept(neighbor);
+        }
+    }
+
+    /**
+     * An estimate of how many moves are still needed to reach a solution,
+     * used by the A* solver. It must never be more than the real number
+     * of moves, or the path found may not be the shortest.
+     * @return the estimated number of remaining moves; 0 if unknown
+     */
+    default int heuristic() {
+        return 0;
+    }
+
+    /**
+     * The key the solver records this configuration under. Configurations
+     * that are symmetric twins, and so solve in the same number of moves,
+     * may return equal keys so only one of them is explored.
+     * @return an object with equals and hashCode that identifies this
+     *         configuration up to symmetry; this configuration by default
+     */
+    default Object canonicalKey() {
+        return this;
+    }
+
+    /**
+     * Whether this configuration can be proven, cheaply, never to reach a
+     * solution. The solvers drop dead neighbors instead of exploring them.
+     * It must never be true for a configuration that can still be solved,
+     * or the solvers may miss the shortest path.
+     * @return true only if no solution can be reached; false by default
+     */
+    default boolean isDead() {
+        return false;
+    }
 }
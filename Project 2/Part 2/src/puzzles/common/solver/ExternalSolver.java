@@ -0,0 +1,556 @@
+package puzzles.common.solver;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * BFS solver that keeps its frontier and visited set on disk instead of the
+ * heap, so the largest search is bounded by disk space.
+ * <p>
+ * Each BFS layer is a file of packed states sorted in ascending order.
+ * The successors of a layer are collected in a fixed size buffer that is
+ * sorted and spilled to a run file whenever it fills up. The runs are then
+ * merged, duplicates dropped, and every state already in an earlier layer
+ * removed by scanning those layers alongside the merge (delayed duplicate
+ * detection). Files are read through memory mappings. No predecessors are
+ * stored; the path is rebuilt afterwards by searching each earlier layer
+ * for a state that has the next step as a neighbor.
+ *
+ * @author Nam Huynh
+ */
+
+public class ExternalSolver {
+    /**
+     * the number of states buffered before a run is spilled, when none is given
+     */
+    private static final int DEFAULT_BUFFER_STATES = 1 << 20;
+    /**
+     * the largest number of bytes mapped at once
+     */
+    private static final long MAX_MAPPING = Integer.MAX_VALUE;
+
+    private int totalConfigs;
+    private int uniqueConfigs;
+    /**
+     * the number of dead configurations dropped before reaching a run file in the last solve
+     */
+    private int prunedConfigs;
+    /**
+     * the number of configurations expanded in the last solve
+     */
+    private int expansions;
+    /**
+     * the directory the layer and run files are created in
+     */
+    private final Path directory;
+    /**
+     * the number of states buffered in memory before a run is spilled
+     */
+    private final int bufferStates;
+    /**
+     * what the last solve did, null before the first solve
+     */
+    private SolverMetrics metrics;
+
+    /**
+     * Create a solver with the default buffer size
+     * @param directory where the temporary layer and run files go
+     */
+    public ExternalSolver(Path directory) {
+        this(directory, DEFAULT_BUFFER_STATES);
+    }
+
+    /**
+     * Create a solver
+     * @param directory where the temporary layer and run files go
+     * @param bufferStates how many successor states to hold in memory before spilling
+     */
+    public ExternalSolver(Path directory, int bufferStates) {
+        this.directory = directory;
+        this.bufferStates = Math.max(bufferStates, 1);
+    }
+
+    /**
+     * Generate the shortest path to the desired destination using BFS
+     * with the frontier and visited set on disk
+     * @param start the starting configuration
+     * @return the shortest path to the desired destination
+     * @throws IOException if the temporary files cannot be written or read
+     */
+    public List<Configuration> solve(PackedConfiguration start) throws IOException {
+        int width = start.pack().length;
+        Path work = Files.createTempDirectory(directory, "bfs");
+        List<Path> layers = new ArrayList<>();
+        metrics = new SolverMetrics("external-bfs");
+        // the visited set is the layer files, which hold nothing but packed states
+        metrics.bytesPerState(8.0 * width);
+        totalConfigs = 1;
+        uniqueConfigs = 1;
+        prunedConfigs = 0;
+        expansions = 0;
+
+        try {
+            Path first = work.resolve("layer-0.bin");
+            try (DataOutputStream out = open(first)) {
+                for (long word : start.pack()) {
+                    out.writeLong(word);
+                }
+            }
+            layers.add(first);
+            // refilled by every expansion, so no collection is built per state
+            List<Configuration> neighbors = new ArrayList<>();
+            Consumer<Configuration> collect = neighbors::add;
+
+            while (true) {
+                int depth = layers.size() - 1;
+                StateFile layer = new StateFile(layers.get(depth), width);
+                RunWriter runs = new RunWriter(work, depth, width);
+                long[] state = new long[width];
+                metrics.frontier(layer.count);
+                metrics.visited(uniqueConfigs);
+                long generatedBefore = totalConfigs;
+                long prunedBefore = prunedConfigs;
+                for (long i = 0; i < layer.count; i++) {
+                    layer.read(i, state);
+                    PackedConfiguration current = start.unpack(state);
+                    expansions += 1;
+                    metrics.expanded();
+                    if (current.isSolution()) {
+                        List<Configuration> path = rebuild(start, current, layers, width);
+                        metrics.generated(totalConfigs - generatedBefore, totalConfigs - generatedBefore);
+                        metrics.endLayer();
+                        metrics.finish(path);
+                        return path;
+                    }
+                    long began = System.nanoTime();
+                    neighbors.clear();
+                    current.forEachNeighbor(collect);
+                    long generatedAt = System.nanoTime();
+                    for (Configuration neighbor : neighbors) {
+                        totalConfigs += 1;
+                        if (neighbor.isDead()) {
+                            prunedConfigs += 1;
+                            metrics.pruned(1);
+                        } else {
+                            runs.add(((PackedConfiguration) neighbor).pack());
+                        }
+                    }
+                    metrics.neighborTime(generatedAt - began);
+                    metrics.visitedTime(System.nanoTime() - generatedAt);
+                }
+                long merging = System.nanoTime();
+                runs.spill();
+                Path next = work.resolve("layer-" + (depth + 1) + ".bin");
+                long added = merge(runs.files, layers, next, width);
+                for (Path run : runs.files) {
+                    Files.deleteIfExists(run);
+                }
+                metrics.visitedTime(System.nanoTime() - merging);
+                metrics.generated(totalConfigs - generatedBefore, added + prunedConfigs - prunedBefore);
+                metrics.endLayer();
+                if (added == 0) {
+                    List<Configuration> none = new LinkedList<>();
+                    metrics.finish(none);
+                    return none;
+                }
+                uniqueConfigs += (int) added;
+                layers.add(next);
+            }
+        } finally {
+            try (var files = Files.list(work)) {
+                for (Path file : files.toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(work);
+        }
+    }
+
+    public void configsPrint(){
+        System.out.println("Total Configs: " + totalConfigs);
+        System.out.println("Unique Configs: " + uniqueConfigs);
+        if (prunedConfigs > 0){
+            System.out.println("Pruned Configs: " + prunedConfigs);
+        }
+    }
+
+    /**
+     * @return the number of configurations generated in the last solve
+     */
+    public int getTotalConfigs(){
+        return totalConfigs;
+    }
+
+    /**
+     * @return the number of distinct configurations seen in the last solve
+     */
+    public int getUniqueConfigs(){
+        return uniqueConfigs;
+    }
+
+    /**
+     * @return the number of configurations expanded in the last solve
+     */
+    public int getExpansions(){
+        return expansions;
+    }
+
+    /**
+     * @return the number of dead configurations dropped before reaching a run file in the last solve
+     */
+    public int getPrunedConfigs(){
+        return prunedConfigs;
+    }
+
+    /**
+     * @return what the last solve did, or null if nothing has been solved yet
+     */
+    public SolverMetrics getMetrics(){
+        return metrics;
+    }
+
+    /**
+     * Walk back from the solution, finding in each earlier layer a state
+     * that has the current step as a neighbor
+     * @param start the starting configuration, used to unpack states
+     * @param solution the solution found in the last layer
+     * @param layers every layer file up to the solution's
+     * @param width longs per packed state
+     * @return the path from the start to the solution
+     * @throws IOException if a layer cannot be read
+     */
+    private static List<Configuration> rebuild(PackedConfiguration start, PackedConfiguration solution,
+                                               List<Path> layers, int width) throws IOException {
+        LinkedList<Configuration> path = new LinkedList<>();
+        path.add(solution);
+        long[] target = solution.pack();
+        long[] state = new long[width];
+        for (int depth = layers.size() - 2; depth >= 0; depth--) {
+            StateFile layer = new StateFile(layers.get(depth), width);
+            search:
+            for (long i = 0; i < layer.count; i++) {
+                layer.read(i, state);
+                PackedConfiguration candidate = start.unpack(state);
+                for (Configuration neighbor : candidate.getNeighbors()) {
+                    if (Arrays.equals(((PackedConfiguration) neighbor).pack(), target)) {
+                        path.add(0, candidate);
+                        target = state.clone();
+                        break search;
+                    }
+                }
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Merge sorted runs into the next layer, dropping duplicates and any
+     * state already present in an earlier layer
+     * @param runs the sorted run files
+     * @param layers the earlier layer files, each sorted
+     * @param output the file to write the new layer to
+     * @param width longs per packed state
+     * @return the number of states written
+     * @throws IOException if a file cannot be read or written
+     */
+    private static long merge(List<Path> runs, List<Path> layers, Path output, int width) throws IOException {
+        PriorityQueue<Cursor> inputs = new PriorityQueue<>((a, b) -> Arrays.compare(a.current, b.current));
+        for (Path run : runs) {
+            Cursor input = new Cursor(new StateFile(run, width));
+            if (input.current != null) {
+                inputs.add(input);
+            }
+        }
+        Cursor[] seen = new Cursor[layers.size()];
+        for (int i = 0; i < seen.length; i++) {
+            seen[i] = new Cursor(new StateFile(layers.get(i), width));
+        }
+        long written = 0;
+        long[] last = null;
+        try (DataOutputStream out = open(output)) {
+            while (!inputs.isEmpty()) {
+                Cursor smallest = inputs.remove();
+                long[] state = smallest.current.clone();
+                smallest.advance();
+                if (smallest.current != null) {
+                    inputs.add(smallest);
+                }
+                if (last != null && Arrays.equals(last, state)) {
+                    continue;
+                }
+                last = state;
+                boolean old = false;
+                for (Cursor layer : seen) {
+                    while (layer.current != null && Arrays.compare(layer.current, state) < 0) {
+                        layer.advance();
+                    }
+                    old |= layer.current != null && Arrays.equals(layer.current, state);
+                }
+                if (!old) {
+                    for (long word : state) {
+                        out.writeLong(word);
+                    }
+                    written++;
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * @param file the file to create
+     * @return a buffered stream writing to the file
+     * @throws IOException if the file cannot be created
+     */
+    private static DataOutputStream open(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+    }
+
+    /**
+     * A read-only file of packed states, mapped in pieces of at most 2 GB
+     */
+    private static final class StateFile {
+        /**
+         * longs per state
+         */
+        private final int width;
+        /**
+         * the number of states in the file
+         */
+        private final long count;
+        /**
+         * the number of states in each mapping
+         */
+        private final long perMapping;
+        /**
+         * the mappings, in file order
+         */
+        private final MappedByteBuffer[] mappings;
+
+        /**
+         * Map a state file
+         * @param file the file
+         * @param width longs per state
+         * @throws IOException if the file cannot be mapped
+         */
+        private StateFile(Path file, int width) throws IOException {
+            this.width = width;
+            long bytes = Files.size(file);
+            this.count = bytes / (8L * width);
+            this.perMapping = MAX_MAPPING / (8L * width);
+            int pieces = (int) ((count + perMapping - 1) / perMapping);
+            this.mappings = new MappedByteBuffer[pieces];
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                for (int p = 0; p < pieces; p++) {
+                    long offset = p * perMapping * 8L * width;
+                    mappings[p] = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                            Math.min(bytes - offset, perMapping * 8L * width));
+                }
+            }
+        }
+
+        /**
+         * Copy one state out of the file
+         * @param index which state
+         * @param into where to copy its longs
+         */
+        private void read(long index, long[] into) {
+            MappedByteBuffer mapping = mappings[(int) (index / perMapping)];
+            int position = (int) (index % perMapping) * 8 * width;
+            for (int w = 0; w < width; w++) {
+                into[w] = mapping.getLong(position + 8 * w);
+            }
+        }
+    }
+
+    /**
+     * Reads the states of a sorted file one at a time
+     */
+    private static final class Cursor {
+        /**
+         * the file being read
+         */
+        private final StateFile file;
+        /**
+         * index of the current state
+         */
+        private long index;
+        /**
+         * the current state, or null past the end
+         */
+        private long[] current;
+
+        /**
+         * @param file the file to read, positioned on its first state
+         */
+        private Cursor(StateFile file) {
+            this.file = file;
+            this.index = -1;
+            this.current = new long[file.width];
+            advance();
+        }
+
+        /**
+         * Move to the next state
+         */
+        private void advance() {
+            index++;
+            if (index < file.count) {
+                file.read(index, current);
+            } else {
+                current = null;
+            }
+        }
+    }
+
+    /**
+     * Buffers successor states and spills them to sorted run files
+     */
+    private final class RunWriter {
+        /**
+         * the directory to write runs in
+         */
+        private final Path work;
+        /**
+         * the layer these runs belong to, used in the file names
+         */
+        private final int depth;
+        /**
+         * longs per state
+         */
+        private final int width;
+        /**
+         * the buffered states, back to back
+         */
+        private final long[] buffer;
+        /**
+         * the number of states in the buffer
+         */
+        private int size;
+        /**
+         * the runs written so far
+         */
+        private final List<Path> files = new ArrayList<>();
+        /**
+         * the pivot state of the current partition
+         */
+        private final long[] pivot;
+
+        /**
+         * @param work the directory to write runs in
+         * @param depth the layer being expanded
+         * @param width longs per state
+         */
+        private RunWriter(Path work, int depth, int width) {
+            this.work = work;
+            this.depth = depth;
+            this.width = width;
+            this.buffer = new long[bufferStates * width];
+            this.pivot = new long[width];
+        }
+
+        /**
+         * Buffer a state, spilling first if the buffer is full
+         * @param state the packed state
+         * @throws IOException if a run cannot be written
+         */
+        private void add(long[] state) throws IOException {
+            if (size == bufferStates) {
+                spill();
+            }
+            System.arraycopy(state, 0, buffer, size * width, width);
+            size++;
+        }
+
+        /**
+         * Sort the buffer, drop duplicates, and write it to a new run file
+         * through a memory mapping
+         * @throws IOException if the run cannot be written
+         */
+        private void spill() throws IOException {
+            if (size == 0) {
+                return;
+            }
+            sort(0, size - 1);
+            int unique = 0;
+            for (int i = 0; i < size; i++) {
+                if (unique == 0 || compare(i, unique - 1) != 0) {
+                    System.arraycopy(buffer, i * width, buffer, unique * width, width);
+                    unique++;
+                }
+            }
+            Path run = work.resolve("run-" + depth + "-" + files.size() + ".bin");
+            try (FileChannel channel = FileChannel.open(run, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, 8L * unique * width);
+                for (int i = 0; i < unique * width; i++) {
+                    mapping.putLong(buffer[i]);
+                }
+                mapping.force();
+            }
+            files.add(run);
+            size = 0;
+        }
+
+        /**
+         * @param a index of the first state
+         * @param b index of the second state
+         * @return negative, zero or positive as state a sorts before, with or after state b
+         */
+        private int compare(int a, int b) {
+            return Arrays.compare(buffer, a * width, (a + 1) * width, buffer, b * width, (b + 1) * width);
+        }
+
+        /**
+         * Swap two buffered states
+         * @param a index of the first state
+         * @param b index of the second state
+         */
+        private void swap(int a, int b) {
+            for (int w = 0; w < width; w++) {
+                long tmp = buffer[a * width + w];
+                buffer[a * width + w] = buffer[b * width + w];
+                buffer[b * width + w] = tmp;
+            }
+        }
+
+        /**
+         * Quicksort the buffered states between two indices, inclusive.
+         * Partitions three ways, since successor buffers hold many duplicates.
+         * @param low the first index
+         * @param high the last index
+         */
+        private void sort(int low, int high) {
+            while (low < high) {
+                System.arraycopy(buffer, ((low + high) >>> 1) * width, pivot, 0, width);
+                int less = low;
+                int i = low;
+                int greater = high;
+                while (i <= greater) {
+                    int order = Arrays.compare(buffer, i * width, (i + 1) * width, pivot, 0, width);
+                    if (order < 0) {
+                        swap(less++, i++);
+                    } else if (order > 0) {
+                        swap(i, greater--);
+                    } else {
+                        i++;
+                    }
+                }
+                // recurse into the smaller side to bound the stack depth
+                if (less - low < high - greater) {
+                    sort(low, less - 1);
+                    low = greater + 1;
+                } else {
+                    sort(greater + 1, high);
+                    high = less - 1;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package puzzles.common.solver;
+
+/**
+ * The collection of configurations the solver has discovered but not yet
+ * expanded. The solver only ever adds to the back and removes from the
+ * front, so any first-in, first-out structure can be plugged in.
+ *
+ * @author Nam Huynh
+ */
+
+public interface Frontier {
+    /**
+     * Add a configuration to the back of the frontier
+     * @param configuration the configuration to add
+     */
+    void add(Configuration configuration);
+
+    /**
+     * Remove and return the configuration at the front of the frontier
+     * @return the oldest configuration in the frontier
+     */
+    Configuration remove();
+
+    /**
+     * @return whether the frontier has no configurations left
+     */
+    boolean isEmpty();
+
+    /**
+     * @return the number of configurations in the frontier
+     */
+    int size();
+
+    /**
+     * Remove every configuration so the frontier can be reused for another solve
+     */
+    void clear();
+}
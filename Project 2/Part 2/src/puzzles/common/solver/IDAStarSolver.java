@@ -0,0 +1,274 @@
+package puzzles.common.solver;
+
+import java.util.*;
+
+/**
+ * Iterative deepening solver. Runs a depth-first search that gives up on any
+ * configuration whose moves so far plus {@link Configuration#heuristic()}
+ * exceed a bound, and raises the bound to the smallest value that was cut
+ * off until a solution is found. With the default heuristic of 0 this is
+ * plain iterative deepening DFS. Only the current path is kept, so memory
+ * grows with the solution depth rather than with the number of states.
+ * <p>
+ * An optional fixed-size transposition table remembers the fewest moves
+ * each configuration was reached with during the current iteration, so
+ * the same configuration is not searched again through a longer route.
+ * <p>
+ * Proving that a puzzle has no solution means trying every simple path, so
+ * unsolvable puzzles are slow unless a depth limit is given.
+ *
+ * @author Nam Huynh
+ */
+
+public class IDAStarSolver {
+    /**
+     * transposition table size used when a puzzle is run with the "ida-tt" option
+     */
+    public static final int TABLE_SIZE = 1 << 20;
+    private int totalConfigs;
+    private int uniqueConfigs;
+    /**
+     * the number of dead configurations dropped in the last solve, over all iterations
+     */
+    private int prunedConfigs;
+    /**
+     * the number of configurations expanded in the last solve, over all iterations
+     */
+    private int expansions;
+    /**
+     * transposition table keys, null where empty; length 0 when there is no table
+     */
+    private final Object[] keys;
+    /**
+     * the fewest moves each key was reached with
+     */
+    private final int[] depths;
+    /**
+     * the iteration each entry was written in; older entries count as empty
+     */
+    private final int[] stamps;
+    /**
+     * the longest path searched before giving up
+     */
+    private final int maxDepth;
+    /**
+     * the current iteration, starting at 1
+     */
+    private int iteration;
+    /**
+     * the smallest estimate that went over the bound in this iteration
+     */
+    private int nextBound;
+    /**
+     * canonical keys of the configurations on the current path
+     */
+    private final Set<Object> onPath = new HashSet<>();
+    /**
+     * the neighbors of the configuration at each depth of the path, reused
+     * so no collection is built per expansion
+     */
+    private final List<List<Configuration>> neighborLists = new ArrayList<>();
+    /**
+     * transposition table entries written in the current iteration
+     */
+    private int stored;
+    /**
+     * what the last solve did, null before the first solve
+     */
+    private SolverMetrics metrics;
+
+    /**
+     * Create a solver without a transposition table
+     */
+    public IDAStarSolver() {
+        this(0);
+    }
+
+    /**
+     * Create a solver with a transposition table of a fixed number of
+     * entries. A new entry always replaces whatever was in its slot.
+     * @param tableSize the number of entries, rounded up to a power of two; 0 for none
+     */
+    public IDAStarSolver(int tableSize) {
+        this(tableSize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create a solver with a transposition table that gives up once a
+     * solution would need more than a number of moves
+     * @param tableSize the number of entries, rounded up to a power of two; 0 for none
+     * @param maxDepth the most moves a solution may take
+     */
+    public IDAStarSolver(int tableSize, int maxDepth) {
+        this.maxDepth = maxDepth;
+        int size = tableSize <= 0 ? 0 : Integer.highestOneBit(Math.max(tableSize, 2) - 1) << 1;
+        this.keys = new Object[size];
+        this.depths = new int[size];
+        this.stamps = new int[size];
+    }
+
+    /**
+     * Generate the shortest path to the desired destination using IDA*
+     * @param start the starting configuration
+     * @return the shortest path to the desired destination, empty if there is
+     * none within the depth limit
+     */
+    public List<Configuration> solve(Configuration start){
+        totalConfigs = 1;
+        prunedConfigs = 0;
+        expansions = 0;
+        Arrays.fill(stamps, 0);
+        LinkedList<Configuration> path = new LinkedList<>();
+        path.add(start);
+        int bound = start.heuristic();
+        metrics = new SolverMetrics(keys.length == 0 ? "ida" : "ida-tt");
+
+        // each iteration is reported as one layer
+        for (iteration = 1; bound <= maxDepth; iteration++){
+            nextBound = Integer.MAX_VALUE;
+            uniqueConfigs = 0;
+            stored = 0;
+            onPath.clear();
+            onPath.add(start.canonicalKey());
+            boolean found = search(path, 0, bound);
+            metrics.endLayer();
+            for (List<Configuration> neighbors : neighborLists){
+                neighbors.clear();
+            }
+            if (found){
+                metrics.finish(path);
+                return path;
+            }
+            if (nextBound == Integer.MAX_VALUE){
+                break;
+            }
+            bound = nextBound;
+        }
+        List<Configuration> none = new LinkedList<>();
+        metrics.finish(none);
+        return none;
+    }
+
+    /**
+     * Depth-first search below the last configuration of the path
+     * @param path the configurations from the start to the current one
+     * @param cost moves from the start to the current configuration
+     * @param bound the largest estimate allowed in this iteration
+     * @return whether a solution was found; the path then ends with it
+     */
+    private boolean search(LinkedList<Configuration> path, int cost, int bound){
+        Configuration current = path.getLast();
+        int estimate = cost + current.heuristic();
+        if (estimate > bound){
+            nextBound = Math.min(nextBound, estimate);
+            return false;
+        }
+        if (current.isSolution()){
+            return true;
+        }
+        expansions += 1;
+        uniqueConfigs += 1;
+        metrics.expanded();
+        // the path is the frontier of a depth-first search
+        metrics.frontier(path.size());
+        metrics.visited(onPath.size() + stored);
+        long began = System.nanoTime();
+        if (neighborLists.size() < path.size()){
+            neighborLists.add(new ArrayList<>());
+        }
+        List<Configuration> neighbors = neighborLists.get(path.size() - 1);
+        neighbors.clear();
+        current.forEachNeighbor(neighbors::add);
+        metrics.neighborTime(System.nanoTime() - began);
+        for (Configuration configuration : neighbors){
+            totalConfigs += 1;
+            long checking = System.nanoTime();
+            Object key = configuration.canonicalKey();
+            boolean skip = onPath.contains(key) || !record(key, cost + 1);
+            metrics.visitedTime(System.nanoTime() - checking);
+            metrics.generated(skip);
+            if (skip){
+                continue;
+            }
+            if (configuration.isDead()){
+                prunedConfigs += 1;
+                metrics.pruned(1);
+                continue;
+            }
+            path.addLast(configuration);
+            onPath.add(key);
+            if (search(path, cost + 1, bound)){
+                return true;
+            }
+            onPath.remove(key);
+            path.removeLast();
+        }
+        return false;
+    }
+
+    /**
+     * Note that a configuration was reached with a number of moves
+     * @param key the configuration's canonical key
+     * @param cost moves from the start
+     * @return false if it was already reached this iteration in as few moves
+     */
+    private boolean record(Object key, int cost){
+        if (keys.length == 0){
+            return true;
+        }
+        int slot = (key.hashCode() * 0x9E3779B9) >>> (Integer.numberOfLeadingZeros(keys.length) + 1);
+        if (stamps[slot] == iteration && depths[slot] <= cost && key.equals(keys[slot])){
+            return false;
+        }
+        if (stamps[slot] != iteration){
+            stored += 1;
+        }
+        keys[slot] = key;
+        depths[slot] = cost;
+        stamps[slot] = iteration;
+        return true;
+    }
+
+    public void configsPrint(){
+        System.out.println("Total Configs: " + totalConfigs);
+        System.out.println("Unique Configs: " + uniqueConfigs);
+        if (prunedConfigs > 0){
+            System.out.println("Pruned Configs: " + prunedConfigs);
+        }
+    }
+
+    /**
+     * @return the number of configurations generated in the last solve, over all iterations
+     */
+    public int getTotalConfigs(){
+        return totalConfigs;
+    }
+
+    /**
+     * @return the number of configurations expanded in the final iteration
+     */
+    public int getUniqueConfigs(){
+        return uniqueConfigs;
+    }
+
+    /**
+     * @return the number of configurations expanded in the last solve, over all iterations
+     */
+    public int getExpansions(){
+        return expansions;
+    }
+
+    /**
+     * @return the number of dead configurations dropped in the last solve, over all iterations
+     */
+    public int getPrunedConfigs(){
+        return prunedConfigs;
+    }
+
+    /**
+     * @return what the last solve did, or null if nothing has been solved yet
+     */
+    public SolverMetrics getMetrics(){
+        return metrics;
+    }
+}
@@ -0,0 +1,25 @@
+package puzzles.common.solver;
+
+/**
+ * A configuration that can be written as a fixed number of longs and
+ * rebuilt from them. Solvers that keep their states outside the heap
+ * store only this packed form.
+ *
+ * @author Nam Huynh
+ */
+
+public interface PackedConfiguration extends Configuration {
+    /**
+     * Pack this configuration. Every configuration of one puzzle packs to
+     * the same number of longs, and equal configurations pack to equal longs.
+     * @return the packed state
+     */
+    long[] pack();
+
+    /**
+     * Rebuild a configuration of the same puzzle as this one.
+     * @param state longs returned by {@link #pack()}
+     * @return the configuration the state was packed from
+     */
+    PackedConfiguration unpack(long[] state);
+}
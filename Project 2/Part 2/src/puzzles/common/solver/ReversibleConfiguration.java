@@ -0,0 +1,23 @@
+package puzzles.common.solver;
+
+import java.util.Collection;
+
+/**
+ * A configuration that knows its exact goal and can step backwards.
+ * The solver can then search from both ends at once and meet in the middle.
+ *
+ * @author Nam Huynh
+ */
+
+public interface ReversibleConfiguration extends Configuration {
+    /**
+     * Get the collection of configurations that have this one as a neighbor.
+     * @return All the predecessors
+     */
+    Collection<Configuration> getPredecessors();
+
+    /**
+     * @return the single solution configuration this puzzle is heading to
+     */
+    ReversibleConfiguration getGoal();
+}
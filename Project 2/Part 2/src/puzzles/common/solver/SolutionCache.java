@@ -0,0 +1,172 @@
+package puzzles.common.solver;
+
+import java.util.*;
+
+/**
+ * Remembers solved paths so a configuration anywhere along one can be
+ * answered without solving again. Every suffix of a shortest path is a
+ * shortest path from its first configuration, so one solve answers every
+ * step that follows it. Boards found to have no solution are remembered
+ * too.
+ * <p>
+ * Paths are kept and evicted whole, least recently used first, once their
+ * estimated size passes a byte budget. Safe to use from several threads.
+ *
+ * @author Nam Huynh
+ */
+
+public class SolutionCache {
+    /**
+     * rough bytes of the index entry kept for each configuration of a path
+     */
+    private static final int ENTRY_OVERHEAD = 48;
+
+    /**
+     * A remembered solve. Compared by identity, since the same path can be
+     * remembered twice.
+     */
+    private static final class Solve {
+        /**
+         * the shortest path, or just the start when there is no solution
+         */
+        private final List<Configuration> path;
+        /**
+         * whether the path reaches a solution
+         */
+        private final boolean solved;
+        /**
+         * estimated size of the path and its index entries
+         */
+        private final long bytes;
+
+        /**
+         * @param path the shortest path, or just the start when there is no solution
+         * @param solved whether the path reaches a solution
+         * @param bytes estimated size of the path and its index entries
+         */
+        private Solve(List<Configuration> path, boolean solved, long bytes) {
+            this.path = path;
+            this.solved = solved;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Where a configuration sits in a remembered solve
+     * @param solve the solve
+     * @param index its position in the path
+     */
+    private record Hit(Solve solve, int index) {}
+
+    /**
+     * most bytes the remembered paths may take
+     */
+    private final long budget;
+    /**
+     * rough bytes of one configuration
+     */
+    private final int bytesPerState;
+    /**
+     * every remembered configuration and where to find it
+     */
+    private final Map<Configuration, Hit> index = new HashMap<>();
+    /**
+     * the remembered solves, least recently used first
+     */
+    private final LinkedHashMap<Solve, Boolean> solves = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * estimated bytes of every remembered solve
+     */
+    private long used;
+    private int hits;
+    private int misses;
+
+    /**
+     * Create an empty cache
+     * @param budget the most bytes the remembered paths may take
+     * @param bytesPerState rough size of one configuration of the puzzle
+     */
+    public SolutionCache(long budget, int bytesPerState) {
+        this.budget = budget;
+        this.bytesPerState = bytesPerState;
+    }
+
+    /**
+     * Look up what is left to do from a configuration
+     * @param config the configuration
+     * @return the shortest path from it to a solution, an empty list if it
+     * has none, or null if it is not remembered
+     */
+    public synchronized List<Configuration> lookup(Configuration config) {
+        Hit hit = index.get(config);
+        if (hit == null) {
+            misses += 1;
+            return null;
+        }
+        hits += 1;
+        solves.get(hit.solve());
+        if (!hit.solve().solved) {
+            return List.of();
+        }
+        return hit.solve().path.subList(hit.index(), hit.solve().path.size());
+    }
+
+    /**
+     * Remember the result of a solve
+     * @param start the configuration that was solved
+     * @param path the path the solver returned, empty if there is no solution
+     */
+    public synchronized void put(Configuration start, List<Configuration> path) {
+        boolean solved = !path.isEmpty();
+        List<Configuration> steps = solved ? List.copyOf(path) : List.of(start);
+        long bytes = (long) steps.size() * (bytesPerState + ENTRY_OVERHEAD);
+        if (bytes > budget) {
+            return;
+        }
+        Solve solve = new Solve(steps, solved, bytes);
+        solves.put(solve, Boolean.TRUE);
+        used += bytes;
+        for (int i = 0; i < steps.size(); i++) {
+            index.put(steps.get(i), new Hit(solve, i));
+        }
+        Iterator<Solve> oldest = solves.keySet().iterator();
+        while (used > budget) {
+            Solve evicted = oldest.next();
+            oldest.remove();
+            used -= evicted.bytes;
+            for (Configuration config : evicted.path) {
+                index.computeIfPresent(config, (key, hit) -> hit.solve() == evicted ? null : hit);
+            }
+        }
+    }
+
+    /**
+     * Forget every remembered solve
+     */
+    public synchronized void clear() {
+        index.clear();
+        solves.clear();
+        used = 0;
+    }
+
+    /**
+     * @return estimated bytes of the remembered solves
+     */
+    public synchronized long getUsedBytes() {
+        return used;
+    }
+
+    /**
+     * @return the number of lookups that found an answer
+     */
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that found nothing
+     */
+    public synchronized int getMisses() {
+        return misses;
+    }
+}
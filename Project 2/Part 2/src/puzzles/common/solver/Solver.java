@@ -1,6 +1,15 @@
 package puzzles.common.solver;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * @author Nam Huynh
@@ -9,46 +18,497 @@ import java.util.*;
 public class Solver {
     private int totalConfigs;
     private int uniqueConfigs;
+    /**
+     * the number of distinct configurations found dead and never queued in the last solve
+     */
+    private int prunedConfigs;
+    /**
+     * the number of configurations taken off the frontier in the last solve
+     */
+    private int expansions;
+    /**
+     * creates the frontier used by each solve
+     */
+    private final Supplier<Frontier> frontierFactory;
+    /**
+     * the pool each BFS layer is expanded on, or null to solve on the calling thread
+     */
+    private final ForkJoinPool pool;
+    /**
+     * what the last solve did, null before the first solve
+     */
+    private SolverMetrics metrics;
+    /**
+     * set from any thread to stop the solve in progress
+     */
+    private volatile boolean cancelled;
+    /**
+     * told the number of distinct configurations seen after each layer, or null
+     */
+    private IntConsumer progress;
+
+    /**
+     * Create a solver whose frontier is a growable circular array
+     */
+    public Solver() {
+        this(ArrayFrontier::new);
+    }
+
+    /**
+     * Create a solver with a custom frontier
+     * @param frontierFactory creates a new, empty frontier for each solve
+     */
+    public Solver(Supplier<Frontier> frontierFactory) {
+        this.frontierFactory = frontierFactory;
+        this.pool = null;
+    }
+
+    /**
+     * Create a solver that expands each BFS layer in parallel. The
+     * configurations' forEachNeighbor, equals and hashCode must be safe to call
+     * from several threads at once.
+     * @param pool the pool to expand layers on
+     */
+    public Solver(ForkJoinPool pool) {
+        this.frontierFactory = ArrayFrontier::new;
+        this.pool = pool;
+    }
+
+    /**
+     * Stop the solve in progress, and every later one, with a
+     * CancellationException. Safe to call from any thread.
+     */
+    public void cancel(){
+        cancelled = true;
+    }
+
+    /**
+     * @return whether cancel() has been called
+     */
+    public boolean isCancelled(){
+        return cancelled;
+    }
+
+    /**
+     * Listen to how far each solve has got. The listener is called on the
+     * solving thread once per BFS layer.
+     * @param progress told the number of distinct configurations seen so far, or null for none
+     */
+    public void setProgress(IntConsumer progress){
+        this.progress = progress;
+    }
+
+    /**
+     * @throws CancellationException if the solver was cancelled
+     */
+    private void checkCancelled(){
+        if (cancelled){
+            throw new CancellationException("Solve cancelled");
+        }
+    }
+
+    /**
+     * Close a layer: record it in the metrics and report progress
+     */
+    private void endLayer(){
+        metrics.endLayer();
+        if (progress != null && !cancelled){
+            progress.accept(uniqueConfigs);
+        }
+    }
+
     /**
      * Generate the shortest path to the desired destination using BFS
      * @param start the starting configuration
      * @return the shortest path to the desired destination
+     * @throws CancellationException if the solver is cancelled before it finishes
      */
     public List<Configuration> solve (Configuration start){
-        List<Configuration> queue = new LinkedList<>();
-        Map<Configuration ,Configuration> predecessors = new HashMap<>();
+        if (pool != null){
+            return solveParallel(start);
+        }
+        Frontier queue = frontierFactory.get();
+        // keyed by canonical key, so only the first of a set of symmetric twins is queued
+        Map<Object, Configuration> predecessors = new HashMap<>();
+        // refilled by every expansion, so no collection is built per configuration
+        List<Configuration> neighbors = new ArrayList<>();
+        Consumer<Configuration> collect = neighbors::add;
+        metrics = new SolverMetrics("bfs");
         queue.add(start);
-        predecessors.put(start, null);
+        predecessors.put(start.canonicalKey(), null);
         totalConfigs = 1;
         uniqueConfigs = 1;
+        prunedConfigs = 0;
+        expansions = 0;
+        // the queue holds the rest of one layer followed by part of the next
+        int layerLeft = 1;
+        int nextLayer = 0;
 
         while (!queue.isEmpty()){
-            Configuration current = queue.remove(0);
+            checkCancelled();
+            metrics.frontier(queue.size());
+            Configuration current = queue.remove();
+            expansions += 1;
+            metrics.expanded();
             if (!current.isSolution()){
-                for (Configuration configuration: current.getNeighbors()){
+                long began = System.nanoTime();
+                neighbors.clear();
+                current.forEachNeighbor(collect);
+                long generatedAt = System.nanoTime();
+                for (Configuration configuration: neighbors){
                     totalConfigs +=1;
-                    if (!predecessors.containsKey(configuration)){
-                        uniqueConfigs += 1;
-                        queue.add(configuration);
-                        predecessors.put(configuration, current);
+                    Object key = configuration.canonicalKey();
+                    boolean seen = predecessors.containsKey(key);
+                    metrics.generated(seen);
+                    if (seen){
+                        continue;
+                    }
+                    predecessors.put(key, current);
+                    if (configuration.isDead()){
+                        // remembered so it is not tested again, but never queued
+                        prunedConfigs += 1;
+                        metrics.pruned(1);
+                        continue;
                     }
+                    uniqueConfigs += 1;
+                    queue.add(configuration);
+                    nextLayer += 1;
                 }
+                metrics.neighborTime(generatedAt - began);
+                metrics.visitedTime(System.nanoTime() - generatedAt);
             }
             else if(current.isSolution()){
+                // every queued configuration was reached by a real move from
+                // its recorded predecessor, so the path replays as is
                 List<Configuration> path = new LinkedList<>();
-                while (!current.equals(start)) {
+                while (current != null) {
                     path.add(0, current);
-                    current = predecessors.get(current);
+                    current = predecessors.get(current.canonicalKey());
                 }
-                path.add(0, start);
-                return path;
+                metrics.endLayer();
+                return finish(path);
+            }
+            layerLeft -= 1;
+            if (layerLeft == 0){
+                endLayer();
+                layerLeft = nextLayer;
+                nextLayer = 0;
             }
         }
-        return new LinkedList<>();
+        return finish(new LinkedList<>());
+    }
+
+    /**
+     * Record the end of a solve in the metrics
+     * @param path the path about to be returned
+     * @return the path
+     */
+    private List<Configuration> finish(List<Configuration> path){
+        metrics.visited(uniqueConfigs);
+        metrics.finish(path);
+        return path;
+    }
+
+    /**
+     * Level-synchronous BFS. Every configuration of one depth is expanded
+     * across the pool before any configuration of the next depth, so the
+     * first layer containing a solution gives a shortest path.
+     * @param start the starting configuration
+     * @return the shortest path to the desired destination
+     */
+    private List<Configuration> solveParallel(Configuration start){
+        // the start is its own predecessor since the map cannot hold null
+        ConcurrentMap<Object, Configuration> predecessors = new ConcurrentHashMap<>();
+        predecessors.put(start.canonicalKey(), start);
+        LongAdder generated = new LongAdder();
+        LongAdder dead = new LongAdder();
+        List<Configuration> layer = List.of(start);
+        metrics = new SolverMetrics("parallel-bfs");
+        totalConfigs = 1;
+        uniqueConfigs = 1;
+        prunedConfigs = 0;
+        expansions = 0;
+
+        while (!layer.isEmpty()){
+            checkCancelled();
+            metrics.frontier(layer.size());
+            for (Configuration current : layer){
+                if (current.isSolution()){
+                    List<Configuration> path = new LinkedList<>();
+                    while (current != start) {
+                        path.add(0, current);
+                        current = predecessors.get(current.canonicalKey());
+                    }
+                    path.add(0, start);
+                    metrics.endLayer();
+                    return finish(path);
+                }
+            }
+            List<Configuration> current = layer;
+            layer = pool.submit(() -> current.parallelStream()
+                    .<Configuration>mapMulti((config, discovered) -> {
+                        checkCancelled();
+                        config.forEachNeighbor(neighbor -> {
+                            generated.increment();
+                            if (predecessors.putIfAbsent(neighbor.canonicalKey(), config) == null){
+                                if (neighbor.isDead()){
+                                    dead.increment();
+                                }
+                                else {
+                                    discovered.accept(neighbor);
+                                }
+                            }
+                        });
+                    })
+                    .collect(Collectors.toList())).join();
+            expansions += current.size();
+            int newlyPruned = dead.intValue() - prunedConfigs;
+            metrics.generated(1 + generated.intValue() - totalConfigs, layer.size() + newlyPruned);
+            metrics.pruned(newlyPruned);
+            prunedConfigs += newlyPruned;
+            metrics.expanded(current.size());
+            totalConfigs = 1 + generated.intValue();
+            uniqueConfigs += layer.size();
+            endLayer();
+        }
+        return finish(new LinkedList<>());
+    }
+
+    /**
+     * Generate the shortest path to the desired destination using BFS,
+     * storing each visited configuration only as its packed state, the
+     * index of the state it came from and which neighbor it was. The
+     * table's insertion order is the BFS order, so it doubles as the
+     * frontier. The path is rebuilt by replaying those neighbor choices
+     * from the start, so forEachNeighbor() and getNeighbors() must list
+     * neighbors in the same order every time it is called on equal configurations.
+     * @param start the starting configuration
+     * @return the shortest path to the desired destination
+     * @throws CancellationException if the solver is cancelled before it finishes
+     */
+    public List<Configuration> solveCompact(PackedConfiguration start){
+        long[] state = start.pack();
+        StateTable visited = new StateTable(state.length);
+        visited.add(state, -1, 0);
+        List<Configuration> neighbors = new ArrayList<>();
+        Consumer<Configuration> collect = neighbors::add;
+        metrics = new SolverMetrics("compact-bfs");
+        totalConfigs = 1;
+        uniqueConfigs = 1;
+        prunedConfigs = 0;
+        expansions = 0;
+        // the table past the index is the frontier; layerEnd is where the current layer stops
+        int layerEnd = 1;
+
+        for (int index = 0; index < visited.size(); index++){
+            checkCancelled();
+            if (index == layerEnd){
+                endLayer();
+                layerEnd = visited.size();
+            }
+            metrics.frontier(visited.size() - index);
+            visited.get(index, state);
+            Configuration current = start.unpack(state);
+            expansions += 1;
+            metrics.expanded();
+            if (current.isSolution()){
+                Deque<Integer> moves = new ArrayDeque<>();
+                for (int at = index; visited.parent(at) >= 0; at = visited.parent(at)){
+                    moves.push(visited.move(at));
+                }
+                List<Configuration> path = new LinkedList<>();
+                Configuration step = start;
+                path.add(step);
+                for (int move : moves){
+                    Iterator<Configuration> choices = step.getNeighbors().iterator();
+                    for (int skip = 0; skip < move; skip++){
+                        choices.next();
+                    }
+                    step = choices.next();
+                    path.add(step);
+                }
+                metrics.endLayer();
+                metrics.bytesPerState(visited.bytesPerState());
+                return finish(path);
+            }
+            if (current.isDead()){
+                // the table is the frontier, so a dead state is stored but never expanded
+                prunedConfigs += 1;
+                metrics.pruned(1);
+                continue;
+            }
+            int move = 0;
+            long began = System.nanoTime();
+            neighbors.clear();
+            current.forEachNeighbor(collect);
+            long generatedAt = System.nanoTime();
+            for (Configuration configuration : neighbors){
+                totalConfigs += 1;
+                boolean fresh = visited.add(((PackedConfiguration) configuration).pack(), index, move);
+                if (fresh){
+                    uniqueConfigs += 1;
+                }
+                metrics.generated(!fresh);
+                move += 1;
+            }
+            metrics.neighborTime(generatedAt - began);
+            metrics.visitedTime(System.nanoTime() - generatedAt);
+        }
+        metrics.endLayer();
+        metrics.bytesPerState(visited.bytesPerState());
+        return finish(new LinkedList<>());
+    }
+
+    /**
+     * The bookkeeping for a configuration seen by the bidirectional search
+     * @param link the predecessor when searching forward, or the successor
+     *             when searching backward; null for the start and the goal
+     * @param depth number of moves from the end this side started at
+     */
+    private record Visit(Configuration link, int depth) {}
+
+    /**
+     * Generate the shortest path to the goal by searching forward from the
+     * start and backward from the goal one layer at a time, always growing
+     * the smaller frontier, until the two searches meet.
+     * @param start the starting configuration
+     * @return the shortest path to the goal
+     * @throws CancellationException if the solver is cancelled before it finishes
+     */
+    public List<Configuration> solveBidirectional(ReversibleConfiguration start){
+        Configuration goal = start.getGoal();
+        Map<Configuration, Visit> forward = new HashMap<>();
+        Map<Configuration, Visit> backward = new HashMap<>();
+        List<Configuration> forwardLayer = new ArrayList<>(List.of(start));
+        List<Configuration> backwardLayer = new ArrayList<>(List.of(goal));
+        forward.put(start, new Visit(null, 0));
+        backward.put(goal, new Visit(null, 0));
+        List<Configuration> successors = new ArrayList<>();
+        Consumer<Configuration> collect = successors::add;
+        metrics = new SolverMetrics("bidirectional-bfs");
+        totalConfigs = 2;
+        uniqueConfigs = 2;
+        prunedConfigs = 0;
+        expansions = 0;
+
+        if (start.isSolution()){
+            List<Configuration> path = new LinkedList<>();
+            path.add(start);
+            return finish(path);
+        }
+
+        while (!forwardLayer.isEmpty() && !backwardLayer.isEmpty()){
+            checkCancelled();
+            metrics.frontier(forwardLayer.size() + backwardLayer.size());
+            boolean forwardTurn = forwardLayer.size() <= backwardLayer.size();
+            Map<Configuration, Visit> mine = forwardTurn ? forward : backward;
+            Map<Configuration, Visit> theirs = forwardTurn ? backward : forward;
+            List<Configuration> next = new ArrayList<>();
+            Configuration meeting = null;
+            int best = Integer.MAX_VALUE;
+
+            for (Configuration current : forwardTurn ? forwardLayer : backwardLayer){
+                expansions += 1;
+                metrics.expanded();
+                int depth = mine.get(current).depth() + 1;
+                long began = System.nanoTime();
+                Collection<Configuration> neighbors = successors;
+                if (forwardTurn){
+                    successors.clear();
+                    current.forEachNeighbor(collect);
+                }
+                else {
+                    neighbors = ((ReversibleConfiguration) current).getPredecessors();
+                }
+                long generatedAt = System.nanoTime();
+                for (Configuration configuration : neighbors){
+                    totalConfigs += 1;
+                    boolean seen = mine.containsKey(configuration);
+                    metrics.generated(seen);
+                    // the backward search only finds configurations that reach the goal
+                    if (!seen && forwardTurn && configuration.isDead()){
+                        prunedConfigs += 1;
+                        metrics.pruned(1);
+                        mine.put(configuration, new Visit(current, depth));
+                        continue;
+                    }
+                    if (!seen){
+                        uniqueConfigs += 1;
+                        mine.put(configuration, new Visit(current, depth));
+                        next.add(configuration);
+                        Visit other = theirs.get(configuration);
+                        if (other != null && depth + other.depth() < best){
+                            best = depth + other.depth();
+                            meeting = configuration;
+                        }
+                    }
+                }
+                metrics.neighborTime(generatedAt - began);
+                metrics.visitedTime(System.nanoTime() - generatedAt);
+            }
+            endLayer();
+
+            if (meeting != null){
+                // the layer was expanded in full, so this is the shortest meeting point
+                List<Configuration> path = new LinkedList<>();
+                for (Configuration c = meeting; c != null; c = forward.get(c).link()){
+                    path.add(0, c);
+                }
+                for (Configuration c = backward.get(meeting).link(); c != null; c = backward.get(c).link()){
+                    path.add(c);
+                }
+                return finish(path);
+            }
+            if (forwardTurn){
+                forwardLayer = next;
+            }
+            else {
+                backwardLayer = next;
+            }
+        }
+        return finish(new LinkedList<>());
     }
 
     public void configsPrint(){
         System.out.println("Total Configs: " + totalConfigs);
         System.out.println("Unique Configs: " + uniqueConfigs);
+        if (prunedConfigs > 0){
+            System.out.println("Pruned Configs: " + prunedConfigs);
+        }
+    }
+
+    /**
+     * @return the number of configurations generated in the last solve
+     */
+    public int getTotalConfigs(){
+        return totalConfigs;
+    }
+
+    /**
+     * @return the number of distinct configurations seen in the last solve
+     */
+    public int getUniqueConfigs(){
+        return uniqueConfigs;
+    }
+
+    /**
+     * @return the number of configurations expanded in the last solve
+     */
+    public int getExpansions(){
+        return expansions;
+    }
+
+    /**
+     * @return the number of distinct configurations found dead and never queued in the last solve
+     */
+    public int getPrunedConfigs(){
+        return prunedConfigs;
+    }
+
+    /**
+     * @return what the last solve did, or null if nothing has been solved yet
+     */
+    public SolverMetrics getMetrics(){
+        return metrics;
     }
 }
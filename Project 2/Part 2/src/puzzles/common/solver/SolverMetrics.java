@@ -0,0 +1,331 @@
+package puzzles.common.solver;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * What one solve did and where its time went. Every solver starts a new
+ * one at the beginning of each solve and hands it out through getMetrics()
+ * afterwards. Searches that go one depth at a time record how long each
+ * depth took; the others leave the layer times empty. Neighbor generation
+ * and visited set times are only measured by searches that run on a
+ * single thread.
+ *
+ * @author Nam Huynh
+ */
+
+public final class SolverMetrics {
+    /**
+     * the search that produced these numbers
+     */
+    private final String algorithm;
+    /**
+     * nanoTime when the solve started
+     */
+    private final long begin;
+    /**
+     * nanoTime when the current layer started
+     */
+    private long layerBegin;
+    /**
+     * heap in use when the solve started
+     */
+    private final long baseHeap;
+    /**
+     * the most heap seen in use at a layer boundary or at the end
+     */
+    private long peakHeap;
+    private long expansions;
+    private long generated;
+    /**
+     * generated configurations that were already visited
+     */
+    private long duplicates;
+    /**
+     * generated configurations dropped as dead
+     */
+    private long pruned;
+    private long peakFrontier;
+    private long peakVisited;
+    /**
+     * wall time of each finished layer, only the first layers entries used
+     */
+    private long[] layerNanos = new long[16];
+    private int layers;
+    private long neighborNanos;
+    private long visitedNanos;
+    private long totalNanos;
+    /**
+     * bytes per state when the solver knows them exactly, or -1 to estimate from the heap
+     */
+    private double bytesPerState = -1;
+    private boolean solved;
+    private int pathLength;
+
+    /**
+     * Start measuring a solve
+     * @param algorithm name of the search
+     */
+    SolverMetrics(String algorithm) {
+        this.algorithm = algorithm;
+        this.baseHeap = usedHeap();
+        this.peakHeap = baseHeap;
+        this.begin = System.nanoTime();
+        this.layerBegin = begin;
+    }
+
+    /**
+     * @return bytes of heap currently in use
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Count one configuration expanded
+     */
+    void expanded() {
+        expansions += 1;
+    }
+
+    /**
+     * Count a batch of configurations expanded
+     * @param count how many were expanded
+     */
+    void expanded(long count) {
+        expansions += count;
+    }
+
+    /**
+     * Count one generated neighbor
+     * @param duplicate whether it had been visited already
+     */
+    void generated(boolean duplicate) {
+        generated += 1;
+        if (duplicate) {
+            duplicates += 1;
+        }
+    }
+
+    /**
+     * Count a batch of generated neighbors
+     * @param count how many were generated
+     * @param fresh how many of them had not been visited
+     */
+    void generated(long count, long fresh) {
+        generated += count;
+        duplicates += count - fresh;
+    }
+
+    /**
+     * Count generated configurations dropped as dead
+     * @param count how many were dropped
+     */
+    void pruned(long count) {
+        pruned += count;
+    }
+
+    /**
+     * Note the current number of configurations waiting to be expanded
+     * @param size the frontier size
+     */
+    void frontier(long size) {
+        peakFrontier = Math.max(peakFrontier, size);
+    }
+
+    /**
+     * Note the current number of configurations remembered as visited
+     * @param size the visited set size
+     */
+    void visited(long size) {
+        peakVisited = Math.max(peakVisited, size);
+    }
+
+    /**
+     * Add time spent in getNeighbors
+     * @param nanos the time
+     */
+    void neighborTime(long nanos) {
+        neighborNanos += nanos;
+    }
+
+    /**
+     * Add time spent hashing neighbors and checking and updating the visited set
+     * @param nanos the time
+     */
+    void visitedTime(long nanos) {
+        visitedNanos += nanos;
+    }
+
+    /**
+     * Close the current layer and start timing the next one
+     */
+    void endLayer() {
+        long now = System.nanoTime();
+        if (layers == layerNanos.length) {
+            layerNanos = Arrays.copyOf(layerNanos, layers * 2);
+        }
+        layerNanos[layers++] = now - layerBegin;
+        layerBegin = now;
+        peakHeap = Math.max(peakHeap, usedHeap());
+    }
+
+    /**
+     * Set the bytes per state for solvers that know their own storage
+     * @param bytes the bytes per state
+     */
+    void bytesPerState(double bytes) {
+        bytesPerState = bytes;
+    }
+
+    /**
+     * Stop the clock
+     * @param path the path the solve returned
+     */
+    void finish(List<Configuration> path) {
+        totalNanos = System.nanoTime() - begin;
+        peakHeap = Math.max(peakHeap, usedHeap());
+        solved = !path.isEmpty();
+        pathLength = Math.max(path.size() - 1, 0);
+    }
+
+    /**
+     * @return name of the search
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return configurations expanded
+     */
+    public long getExpansions() {
+        return expansions;
+    }
+
+    /**
+     * @return neighbors generated
+     */
+    public long getGenerated() {
+        return generated;
+    }
+
+    /**
+     * @return generated neighbors rejected as already visited
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * @return generated configurations dropped as dead
+     */
+    public long getPruned() {
+        return pruned;
+    }
+
+    /**
+     * @return the most configurations waiting to be expanded at once
+     */
+    public long getPeakFrontier() {
+        return peakFrontier;
+    }
+
+    /**
+     * @return the most configurations remembered as visited at once
+     */
+    public long getPeakVisited() {
+        return peakVisited;
+    }
+
+    /**
+     * @return wall time of each layer in nanoseconds, in depth order
+     */
+    public long[] getLayerNanos() {
+        return Arrays.copyOf(layerNanos, layers);
+    }
+
+    /**
+     * @return nanoseconds spent in getNeighbors
+     */
+    public long getNeighborNanos() {
+        return neighborNanos;
+    }
+
+    /**
+     * @return nanoseconds spent hashing neighbors and checking the visited set
+     */
+    public long getVisitedNanos() {
+        return visitedNanos;
+    }
+
+    /**
+     * @return wall time of the whole solve in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * The exact figure when the solver stores packed states, otherwise the
+     * growth in used heap divided by the peak visited count. The heap
+     * estimate is rough: collections during the solve pull it down and
+     * garbage not yet collected pushes it up.
+     * @return approximate bytes per visited state
+     */
+    public double getBytesPerState() {
+        if (bytesPerState >= 0) {
+            return bytesPerState;
+        }
+        return peakVisited == 0 ? 0 : (double) Math.max(peakHeap - baseHeap, 0) / peakVisited;
+    }
+
+    /**
+     * @return whether a solution was found
+     */
+    public boolean isSolved() {
+        return solved;
+    }
+
+    /**
+     * @return number of moves in the solution, 0 if none was found
+     */
+    public int getPathLength() {
+        return pathLength;
+    }
+
+    /**
+     * @return these metrics as a single line JSON object
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"algorithm\":\"").append(algorithm).append('"');
+        json.append(",\"solved\":").append(solved);
+        json.append(",\"pathLength\":").append(pathLength);
+        json.append(",\"expansions\":").append(expansions);
+        json.append(",\"generated\":").append(generated);
+        json.append(",\"duplicates\":").append(duplicates);
+        json.append(",\"pruned\":").append(pruned);
+        json.append(",\"peakFrontier\":").append(peakFrontier);
+        json.append(",\"peakVisited\":").append(peakVisited);
+        json.append(",\"totalNanos\":").append(totalNanos);
+        json.append(",\"neighborNanos\":").append(neighborNanos);
+        json.append(",\"visitedNanos\":").append(visitedNanos);
+        json.append(",\"bytesPerState\":").append(String.format(Locale.ROOT, "%.1f", getBytesPerState()));
+        json.append(",\"layerNanos\":[");
+        for (int i = 0; i < layers; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(layerNanos[i]);
+        }
+        return json.append("]}").toString();
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+}
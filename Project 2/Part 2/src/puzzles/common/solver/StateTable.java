@@ -0,0 +1,153 @@
+package puzzles.common.solver;
+
+import java.util.Arrays;
+
+/**
+ * An insertion-ordered set of packed states held in flat primitive arrays.
+ * Each state also records the index of the state it was reached from and
+ * which of that state's neighbors it was, so a solver can keep no
+ * Configuration objects for visited states at all.
+ *
+ * @author Nam Huynh
+ */
+
+final class StateTable {
+    /**
+     * longs per state
+     */
+    private final int width;
+    /**
+     * the states back to back, in the order they were added
+     */
+    private long[] states;
+    /**
+     * for each state, the index of the state it was reached from; -1 for the first
+     */
+    private int[] parents;
+    /**
+     * for each state, its position in the parent's getNeighbors() order
+     */
+    private char[] moves;
+    /**
+     * open addressing hash slots holding state index + 1, or 0 when empty
+     */
+    private int[] slots;
+    /**
+     * the number of states added
+     */
+    private int size;
+
+    /**
+     * @param width longs per state
+     */
+    StateTable(int width) {
+        this.width = width;
+        this.states = new long[64 * width];
+        this.parents = new int[64];
+        this.moves = new char[64];
+        this.slots = new int[128];
+    }
+
+    /**
+     * @return the number of states added
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Add a state unless it is already present
+     * @param state the packed state
+     * @param parent index of the state it was reached from
+     * @param move its position in the parent's neighbors
+     * @return whether the state was new
+     */
+    boolean add(long[] state, int parent, int move) {
+        int mask = slots.length - 1;
+        int slot = hash(state) & mask;
+        while (slots[slot] != 0) {
+            int index = slots[slot] - 1;
+            if (Arrays.equals(states, index * width, (index + 1) * width, state, 0, width)) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == parents.length) {
+            int capacity = size * 2;
+            states = Arrays.copyOf(states, capacity * width);
+            parents = Arrays.copyOf(parents, capacity);
+            moves = Arrays.copyOf(moves, capacity);
+        }
+        System.arraycopy(state, 0, states, size * width, width);
+        parents[size] = parent;
+        moves[size] = (char) move;
+        slots[slot] = ++size;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return true;
+    }
+
+    /**
+     * Copy a state out of the table
+     * @param index which state
+     * @param into where to copy its longs
+     */
+    void get(int index, long[] into) {
+        System.arraycopy(states, index * width, into, 0, width);
+    }
+
+    /**
+     * @param index which state
+     * @return the index of the state it was reached from, or -1
+     */
+    int parent(int index) {
+        return parents[index];
+    }
+
+    /**
+     * @param index which state
+     * @return its position in the parent's neighbors
+     */
+    int move(int index) {
+        return moves[index];
+    }
+
+    /**
+     * @return approximate bytes used per stored state, hash slots included
+     */
+    double bytesPerState() {
+        long bytes = 8L * states.length + 4L * parents.length + 2L * moves.length + 4L * slots.length;
+        return size == 0 ? 0 : (double) bytes / size;
+    }
+
+    /**
+     * Double the hash slots and reinsert every state
+     */
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        long[] state = new long[width];
+        for (int index = 0; index < size; index++) {
+            get(index, state);
+            int slot = hash(state) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = index + 1;
+        }
+    }
+
+    /**
+     * @param state a packed state
+     * @return a well mixed hash of its longs
+     */
+    private static int hash(long[] state) {
+        long h = 0x9E3779B97F4A7C15L;
+        for (long word : state) {
+            h = (h ^ word) * 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 31;
+        }
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,566 @@
+package puzzles.generate;
+
+import puzzles.chess.model.ChessConfig;
+import puzzles.chess.model.ChessSolver;
+import puzzles.common.solver.Configuration;
+import puzzles.common.solver.Solver;
+import puzzles.hoppers.model.HoppersConfig;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates fresh Hoppers and Chess puzzles that are known to be solvable,
+ * and rates how hard each one is. A board is built backwards from a
+ * solved board: starting from a single piece, moves are played in reverse,
+ * each one putting back the piece the forward move captures, until the
+ * board has the pieces asked for. Playing the same moves forwards solves
+ * it, so every board written has a solution.
+ * <p>
+ * Each board is then solved again to rate it, with the BFS solver for
+ * Hoppers and the depth-first solver for Chess. The rating is the length
+ * of the solution, the boards the solver expanded and generated, and how
+ * many of the opening moves still lead to a solution. Its effort is the
+ * boards expanded per solution move: 1 means the solver never strayed
+ * from the solution. BFS expands every board nearer the start than the
+ * solution, so Hoppers efforts run far higher than Chess ones.
+ * <p>
+ * Candidates are numbered from 0, and candidate i is built from the seed
+ * plus i. Workers take candidates in order and every candidate taken is
+ * finished, so the boards kept, the first of each distinct board whose
+ * effort is in range, are the same for any number of workers. They are
+ * written in the puzzles' usual file format, with a ratings.csv index.
+ *
+ * @author Nam Huynh
+ */
+
+public class PuzzleGenerator {
+    /**
+     * index file written next to the boards
+     */
+    private static final String INDEX = "ratings.csv";
+    /**
+     * candidates tried per board asked for before giving up
+     */
+    private static final int ATTEMPTS_PER_BOARD = 100;
+    /**
+     * random reverse moves tried per piece placed before a candidate is dropped
+     */
+    private static final int TRIES_PER_PIECE = 1000;
+    /**
+     * boards a rating solve may expand when no limit is given
+     */
+    private static final int DEFAULT_MAX_EXPANDED = 1 << 20;
+    /**
+     * dead boards the chess rating solver can hold
+     */
+    private static final int CHESS_TABLE_SIZE = 1 << 18;
+    /**
+     * row and column offsets of every Hoppers jump, the landing square from the start
+     */
+    private static final int[][] HOPPERS_JUMPS = {{-4, 0}, {4, 0}, {0, 4}, {0, -4}, {-2, -2}, {2, 2}, {-2, 2}, {2, -2}};
+    /**
+     * the chess pieces a generated board may hold
+     */
+    private static final String CHESS_PIECES = "KQRBNP";
+    /**
+     * row and column steps from a captured square back towards the square the
+     * capturing piece came from, for each piece in CHESS_PIECES order
+     */
+    private static final int[][][] CHESS_STEPS = {
+            {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {-1, -1}, {1, -1}, {-1, 1}},
+            {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {-1, -1}, {1, -1}, {-1, 1}},
+            {{1, 0}, {-1, 0}, {0, 1}, {0, -1}},
+            {{1, 1}, {-1, -1}, {1, -1}, {-1, 1}},
+            {{2, 1}, {-2, 1}, {2, -1}, {-2, -1}, {1, 2}, {-1, -2}, {-1, 2}, {1, -2}},
+            // a pawn captures up the board, so it came from the row below
+            {{1, 1}, {1, -1}}
+    };
+    /**
+     * whether each piece in CHESS_PIECES order slides any distance along its steps
+     */
+    private static final boolean[] CHESS_SLIDES = {false, true, true, true, false, false};
+
+    /**
+     * The puzzles that can be generated
+     */
+    public enum Kind {HOPPERS, CHESS}
+
+    /**
+     * How hard a generated board is to solve
+     * @param moves moves in the solution
+     * @param expanded boards the solver expanded
+     * @param generated boards the solver generated
+     * @param startMoves moves that can be made from the starting board
+     * @param winningStartMoves of those, the moves that still lead to a solution
+     */
+    public record Rating(int moves, long expanded, long generated, int startMoves, int winningStartMoves) {
+        /**
+         * @return the mean number of moves from an expanded board
+         */
+        public double branching() {
+            return expanded == 0 ? 0 : (double) generated / expanded;
+        }
+
+        /**
+         * @return boards expanded per solution move, at least 1 for a board with any moves
+         */
+        public double effort() {
+            return moves == 0 ? 0 : (double) expanded / moves;
+        }
+    }
+
+    /**
+     * A generated board and its rating
+     * @param index the candidate number the board was built from
+     * @param seed the seed it was built from
+     * @param text the board in the puzzle's file format
+     * @param key equal for boards that are the same up to mirroring
+     * @param rating how hard it is
+     */
+    public record Puzzle(long index, long seed, String text, Object key, Rating rating) {}
+
+    /**
+     * the puzzle to generate
+     */
+    private final Kind kind;
+    private final int rows;
+    private final int cols;
+    /**
+     * green frogs for Hoppers, pieces for Chess
+     */
+    private final int pieces;
+    /**
+     * the seed of candidate 0
+     */
+    private final long seed;
+    /**
+     * most boards a rating solve may expand; a candidate that needs more is dropped
+     */
+    private final int maxExpanded;
+
+    /**
+     * Create a generator
+     * @param kind the puzzle to generate
+     * @param rows rows of every board
+     * @param cols columns of every board
+     * @param pieces green frogs for Hoppers, pieces for Chess
+     * @param seed the seed of candidate 0
+     * @param maxExpanded most boards a rating solve may expand
+     */
+    public PuzzleGenerator(Kind kind, int rows, int cols, int pieces, long seed, int maxExpanded) {
+        if (rows < 1 || cols < 1 || pieces < 1) {
+            throw new IllegalArgumentException("Board size and pieces must be positive");
+        }
+        if (kind == Kind.CHESS && rows * cols > Long.SIZE) {
+            throw new IllegalArgumentException("Chess boards hold at most " + Long.SIZE + " squares");
+        }
+        this.kind = kind;
+        this.rows = rows;
+        this.cols = cols;
+        this.pieces = pieces;
+        this.seed = seed;
+        this.maxExpanded = maxExpanded;
+    }
+
+    /**
+     * Build a board by playing moves backwards from a solved board
+     * @param random decides the solved board and every move
+     * @return the board in the puzzle's file format, or null if the pieces did not fit
+     */
+    String build(SplittableRandom random) {
+        char[][] board = new char[rows][cols];
+        boolean placed = kind == Kind.HOPPERS ? buildHoppers(board, random) : buildChess(board, random);
+        if (!placed) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder();
+        text.append(rows).append(' ').append(cols).append(System.lineSeparator());
+        for (char[] row : board) {
+            StringJoiner line = new StringJoiner(" ");
+            for (char cell : row) {
+                line.add(String.valueOf(cell));
+            }
+            text.append(line).append(System.lineSeparator());
+        }
+        return text.toString();
+    }
+
+    /**
+     * Lily pads are the cells whose row and column add up to an even
+     * number, as on the usual board. The red frog starts alone; each
+     * reverse jump moves a frog back to where it jumped from and puts a
+     * green frog back on the pad it jumped over.
+     * @param board filled in with the board
+     * @param random decides the red frog's pad and every jump
+     * @return whether every green frog was placed
+     */
+    private boolean buildHoppers(char[][] board, SplittableRandom random) {
+        List<int[]> frogs = new ArrayList<>();
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                board[r][c] = (r + c) % 2 == 0 ? HoppersConfig.LILY_PAD : HoppersConfig.WATER;
+            }
+        }
+        int red;
+        do {
+            red = random.nextInt(rows * cols);
+        } while (board[red / cols][red % cols] != HoppersConfig.LILY_PAD);
+        board[red / cols][red % cols] = HoppersConfig.RED_FROG;
+        frogs.add(new int[]{red / cols, red % cols});
+
+        int greens = 0;
+        for (int tries = 0; greens < pieces && tries < pieces * TRIES_PER_PIECE; tries++) {
+            int[] frog = frogs.get(random.nextInt(frogs.size()));
+            int[] jump = HOPPERS_JUMPS[random.nextInt(HOPPERS_JUMPS.length)];
+            int fromRow = frog[0] - jump[0];
+            int fromCol = frog[1] - jump[1];
+            int overRow = frog[0] - jump[0] / 2;
+            int overCol = frog[1] - jump[1] / 2;
+            if (isEmpty(board, fromRow, fromCol, HoppersConfig.LILY_PAD)
+                    && isEmpty(board, overRow, overCol, HoppersConfig.LILY_PAD)) {
+                board[fromRow][fromCol] = board[frog[0]][frog[1]];
+                board[frog[0]][frog[1]] = HoppersConfig.LILY_PAD;
+                board[overRow][overCol] = HoppersConfig.GREEN_FROG;
+                frog[0] = fromRow;
+                frog[1] = fromCol;
+                frogs.add(new int[]{overRow, overCol});
+                greens += 1;
+            }
+        }
+        return greens == pieces;
+    }
+
+    /**
+     * One piece starts alone. Each reverse capture moves a piece back to a
+     * square it could have captured from, along an empty path, and puts a
+     * random piece back on the square it captured.
+     * @param board filled in with the board
+     * @param random decides the first piece and every capture
+     * @return whether every piece was placed
+     */
+    private boolean buildChess(char[][] board, SplittableRandom random) {
+        for (char[] row : board) {
+            Arrays.fill(row, '.');
+        }
+        List<int[]> placed = new ArrayList<>();
+        int first = random.nextInt(rows * cols);
+        board[first / cols][first % cols] = CHESS_PIECES.charAt(random.nextInt(CHESS_PIECES.length()));
+        placed.add(new int[]{first / cols, first % cols});
+
+        List<int[]> sources = new ArrayList<>();
+        for (int tries = 0; placed.size() < pieces && tries < pieces * TRIES_PER_PIECE; tries++) {
+            int[] target = placed.get(random.nextInt(placed.size()));
+            int piece = CHESS_PIECES.indexOf(board[target[0]][target[1]]);
+            sources.clear();
+            for (int[] step : CHESS_STEPS[piece]) {
+                int r = target[0] + step[0];
+                int c = target[1] + step[1];
+                while (isEmpty(board, r, c, '.')) {
+                    sources.add(new int[]{r, c});
+                    if (!CHESS_SLIDES[piece]) {
+                        break;
+                    }
+                    r += step[0];
+                    c += step[1];
+                }
+            }
+            if (sources.isEmpty()) {
+                continue;
+            }
+            int[] source = sources.get(random.nextInt(sources.size()));
+            board[source[0]][source[1]] = board[target[0]][target[1]];
+            board[target[0]][target[1]] = CHESS_PIECES.charAt(random.nextInt(CHESS_PIECES.length()));
+            placed.add(source);
+        }
+        return placed.size() == pieces;
+    }
+
+    /**
+     * @param board the board being built
+     * @param r a row, possibly off the board
+     * @param c a column, possibly off the board
+     * @param empty the character of an empty square
+     * @return whether the square is on the board and empty
+     */
+    private static boolean isEmpty(char[][] board, int r, int c, char empty) {
+        return r >= 0 && r < board.length && c >= 0 && c < board[r].length && board[r][c] == empty;
+    }
+
+    /**
+     * Load a board the way the puzzle's own programs do
+     * @param file a board file
+     * @return the starting configuration
+     * @throws IOException if the file cannot be read
+     */
+    Configuration load(Path file) throws IOException {
+        return kind == Kind.HOPPERS ? new HoppersConfig(file.toString()) : new ChessConfig(file.toString());
+    }
+
+    /**
+     * Solve a board to rate it
+     * @param start the board
+     * @return its rating, or null if it has no solution or needs more than the expansion limit
+     */
+    Rating rate(Configuration start) {
+        try {
+            Rating rating = kind == Kind.HOPPERS ? rateHoppers(start) : rateChess((ChessConfig) start);
+            return rating.moves() < 0 ? null : rating;
+        } catch (CancellationException ce) {
+            return null;
+        }
+    }
+
+    /**
+     * @param start a Hoppers board
+     * @return its rating from the BFS solver; moves is -1 if there is no solution
+     */
+    private Rating rateHoppers(Configuration start) {
+        Solver solver = limited(new Solver());
+        List<Configuration> path = solver.solve(start);
+        int startMoves = 0;
+        int winning = 0;
+        for (Configuration next : start.getNeighbors()) {
+            startMoves += 1;
+            if (!next.isDead() && !limited(new Solver()).solve(next).isEmpty()) {
+                winning += 1;
+            }
+        }
+        return new Rating(path.size() - 1, solver.getExpansions(), solver.getTotalConfigs(), startMoves, winning);
+    }
+
+    /**
+     * The opening moves are solved after the board itself, sharing its
+     * dead-board table, so they cost little more than the board did.
+     * @param start a Chess board
+     * @return its rating from the depth-first solver; moves is -1 if there is no solution
+     */
+    private Rating rateChess(ChessConfig start) {
+        ChessSolver solver = limited(new ChessSolver(CHESS_TABLE_SIZE));
+        List<Configuration> path = solver.solve(start);
+        long expanded = solver.getExpansions();
+        long generated = solver.getTotalConfigs();
+        int startMoves = 0;
+        int winning = 0;
+        ChessSolver opening = limited(new ChessSolver(solver));
+        for (Configuration next : start.getNeighbors()) {
+            startMoves += 1;
+            if (!opening.solve((ChessConfig) next).isEmpty()) {
+                winning += 1;
+            }
+        }
+        return new Rating(path.size() - 1, expanded, generated, startMoves, winning);
+    }
+
+    /**
+     * @param solver a BFS solver
+     * @return the solver, set to cancel itself past the expansion limit
+     */
+    private Solver limited(Solver solver) {
+        solver.setProgress(unique -> {
+            if (unique > maxExpanded) {
+                solver.cancel();
+            }
+        });
+        return solver;
+    }
+
+    /**
+     * @param solver a depth-first chess solver
+     * @return the solver, set to cancel itself past the expansion limit
+     */
+    private ChessSolver limited(ChessSolver solver) {
+        solver.setProgress(expanded -> {
+            if (expanded > maxExpanded) {
+                solver.cancel();
+            }
+        });
+        return solver;
+    }
+
+    /**
+     * Build and rate one candidate. The board goes through a scratch file
+     * so it is read exactly as a file written from it will be.
+     * @param index the candidate number
+     * @return the rated board, or null if it could not be built or solved in the limit
+     * @throws IOException if the scratch file cannot be written
+     */
+    public Puzzle candidate(long index) throws IOException {
+        long candidateSeed = seed + index;
+        String text = build(new SplittableRandom(candidateSeed));
+        if (text == null) {
+            return null;
+        }
+        Path scratch = Files.createTempFile("puzzle", ".txt");
+        try {
+            Files.writeString(scratch, text);
+            Configuration start = load(scratch);
+            Rating rating = rate(start);
+            return rating == null ? null : new Puzzle(index, candidateSeed, text, start.canonicalKey(), rating);
+        } finally {
+            Files.deleteIfExists(scratch);
+        }
+    }
+
+    /**
+     * Generate boards on a pool of workers until enough distinct boards in
+     * the effort range are found, or too many candidates have been tried
+     * @param count boards wanted
+     * @param workers candidates built at once
+     * @param minEffort least effort a board may have
+     * @param maxEffort most effort a board may have
+     * @return the boards, fewest candidate number first; fewer than count if candidates ran out
+     * @throws IOException if a scratch file cannot be written
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public List<Puzzle> generate(int count, int workers, double minEffort, double maxEffort)
+            throws IOException, InterruptedException {
+        // the first candidate of each distinct board, by canonical key so mirror images count once
+        Map<Object, Puzzle> boards = new ConcurrentHashMap<>();
+        AtomicLong next = new AtomicLong();
+        long attempts = (long) count * ATTEMPTS_PER_BOARD;
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                running.add(pool.submit(() -> {
+                    while (boards.size() < count) {
+                        long index = next.getAndIncrement();
+                        if (index >= attempts) {
+                            break;
+                        }
+                        Puzzle puzzle = candidate(index);
+                        if (puzzle != null && puzzle.rating().effort() >= minEffort
+                                && puzzle.rating().effort() <= maxEffort) {
+                            boards.merge(puzzle.key(), puzzle, (a, b) -> a.index() <= b.index() ? a : b);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : running) {
+                try {
+                    worker.get();
+                } catch (ExecutionException ee) {
+                    if (ee.getCause() instanceof IOException ioe) {
+                        throw ioe;
+                    }
+                    throw new IllegalStateException(ee.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        List<Puzzle> found = new ArrayList<>(boards.values());
+        found.sort(Comparator.comparingLong(Puzzle::index));
+        return found.subList(0, Math.min(count, found.size()));
+    }
+
+    /**
+     * @param puzzle a rated board
+     * @return the file name it is written under
+     */
+    public String fileName(Puzzle puzzle) {
+        return kind.name().toLowerCase(Locale.ROOT) + "-" + rows + "x" + cols + "-" + pieces + "-"
+                + puzzle.seed() + ".txt";
+    }
+
+    /**
+     * Write every board to its own file, and their ratings to the index
+     * @param puzzles the boards
+     * @param directory where the files go; created if missing
+     * @throws IOException if a file cannot be written
+     */
+    public void write(List<Puzzle> puzzles, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        try (PrintWriter index = new PrintWriter(Files.newBufferedWriter(directory.resolve(INDEX)))) {
+            index.println("file,seed,moves,expanded,generated,branching,start_moves,winning_start_moves,effort");
+            for (Puzzle puzzle : puzzles) {
+                String name = fileName(puzzle);
+                Files.writeString(directory.resolve(name), puzzle.text());
+                Rating rating = puzzle.rating();
+                index.println(String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%.2f,%d,%d,%.2f", name, puzzle.seed(),
+                        rating.moves(), rating.expanded(), rating.generated(), rating.branching(),
+                        rating.startMoves(), rating.winningStartMoves(), rating.effort()));
+            }
+        }
+    }
+
+    /**
+     * Generate a set of boards
+     * @param args options, then the puzzle, the board size, the pieces and the output directory
+     */
+    public static void main(String[] args) {
+        int workers = Runtime.getRuntime().availableProcessors();
+        int count = 10;
+        long seed = 1;
+        double minEffort = 0;
+        double maxEffort = Double.MAX_VALUE;
+        int maxExpanded = DEFAULT_MAX_EXPANDED;
+        int i = 0;
+        try {
+            for (; i + 1 < args.length && args[i].startsWith("-"); i += 2) {
+                switch (args[i]) {
+                    case "-j" -> workers = Integer.parseInt(args[i + 1]);
+                    case "-n" -> count = Integer.parseInt(args[i + 1]);
+                    case "-s" -> seed = Long.parseLong(args[i + 1]);
+                    case "-x" -> maxExpanded = Integer.parseInt(args[i + 1]);
+                    case "-e" -> {
+                        String[] range = args[i + 1].split("-", 2);
+                        minEffort = range[0].isEmpty() ? 0 : Double.parseDouble(range[0]);
+                        maxEffort = range.length < 2 || range[1].isEmpty() ? Double.MAX_VALUE : Double.parseDouble(range[1]);
+                    }
+                    default -> throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            i = args.length;
+        }
+        if (i == args.length - 5 && workers > 0 && count > 0
+                && (args[i].equalsIgnoreCase("hoppers") || args[i].equalsIgnoreCase("chess"))) {
+            try {
+                PuzzleGenerator generator = new PuzzleGenerator(Kind.valueOf(args[i].toUpperCase(Locale.ROOT)),
+                        Integer.parseInt(args[i + 1]), Integer.parseInt(args[i + 2]), Integer.parseInt(args[i + 3]),
+                        seed, maxExpanded);
+                run(generator, count, workers, minEffort, maxEffort, Path.of(args[i + 4]));
+                return;
+            } catch (NumberFormatException nfe) {
+                // falls through to the usage line
+            } catch (IllegalArgumentException iae) {
+                System.out.println(iae.getMessage());
+                return;
+            }
+        }
+        System.out.println("Usage: java PuzzleGenerator [-j workers] [-n boards] [-s seed] [-e min-max effort] "
+                + "[-x max expanded] hoppers|chess rows cols pieces directory");
+    }
+
+    /**
+     * Generate boards and write them out, reporting how it went
+     * @param generator builds and rates the boards
+     * @param count boards wanted
+     * @param workers candidates built at once
+     * @param minEffort least effort a board may have
+     * @param maxEffort most effort a board may have
+     * @param directory where the boards are written
+     */
+    private static void run(PuzzleGenerator generator, int count, int workers, double minEffort, double maxEffort,
+                            Path directory) {
+        try {
+            long begin = System.nanoTime();
+            List<Puzzle> puzzles = generator.generate(count, workers, minEffort, maxEffort);
+            generator.write(puzzles, directory);
+            System.out.printf("%d of %d boards in %.1f s on %d workers, written to %s%n", puzzles.size(), count,
+                    (System.nanoTime() - begin) / 1e9, workers, directory);
+        } catch (IOException ioe) {
+            System.out.println(ioe.getMessage());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
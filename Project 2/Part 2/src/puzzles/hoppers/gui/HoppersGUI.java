@@ -11,9 +11,11 @@ import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.stage.FileChooser;
 import puzzles.common.Observer;
+import puzzles.hoppers.model.HoppersConfig;
 import puzzles.hoppers.model.HoppersModel;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.stage.Stage;
 
 import java.io.File;
@@ -68,6 +70,15 @@ public class HoppersGUI extends Application implements Observer<HoppersModel, St
      * the board to play
      */
     private BorderPane borderPane;
+    /**
+     * the image on each cell's button; the buttons are made once per board
+     * size, and their images are changed in place instead of replaced
+     */
+    private ImageView[][] images = new ImageView[0][0];
+    /**
+     * the char each cell shows now, so only cells that change are redrawn
+     */
+    private char[][] shown = new char[0][0];
 
 
     /**
@@ -110,10 +121,8 @@ public class HoppersGUI extends Application implements Observer<HoppersModel, St
             fileChooser.setInitialDirectory(new File(currentPath));
             File file = fileChooser.showOpenDialog(stage);
             if (file != null) {
-                String fileName = "data/hoppers/" + file.getName();
-                model.load(fileName);
-                borderPane.setCenter(center());
-                stage.sizeToScene();
+                // the update from the model redraws the board
+                model.load("data/hoppers/" + file.getName());
             }
 
         });
@@ -127,8 +136,7 @@ public class HoppersGUI extends Application implements Observer<HoppersModel, St
         BorderPane.setAlignment(status, Pos.CENTER);
         borderPane.setTop(status);
 
-        GridPane center = center();
-        borderPane.setCenter(center);
+        refreshBoard();
 
         Scene scene = new Scene(borderPane);
         stage.setScene(scene);
@@ -136,42 +144,68 @@ public class HoppersGUI extends Application implements Observer<HoppersModel, St
     }
 
     /**
-     * Generate the board for the game
-     * @return a new board for the game
+     * Generate the buttons of the board, with no images yet
+     * @param rows row size of the board
+     * @param cols column size of the board
      */
-    private GridPane center(){
+    private void makeBoard(int rows, int cols){
         GridPane gridPane = new GridPane();
-        String [] config = model.getCurrentConfig().toString().strip().split("\n");
-        for (int r = 0; r < config.length; r++){
-            String[] charList = config[r].split("\\s+");
-            for (int c = 0; c < charList.length; c++){
-                Button button = new Button();
+        this.images = new ImageView[rows][cols];
+        this.shown = new char[rows][cols];
+        for (int r = 0; r < rows; r++){
+            for (int c = 0; c < cols; c++){
                 int finalR = r;
                 int finalC = c;
-                if (charList[c].charAt(0) == 'G'){
-                    button.setGraphic(new ImageView(greenFrog));
-                }
-                else if (charList[c].charAt(0) == 'R'){
-                    button.setGraphic(new ImageView(redFrog));
-                }
-                else if (charList[c].charAt(0) == '.'){
-                    button.setGraphic(new ImageView(lily_pad));
-                }
-                else if (charList[c].charAt(0) == '*'){
-                    button.setGraphic(new ImageView(water));
-                }
+                ImageView image = new ImageView();
+                Button button = new Button();
+                button.setGraphic(image);
                 button.setOnAction(event -> model.select(finalR, finalC));
                 button.setMinSize(ICON_SIZE, ICON_SIZE);
                 button.setMaxSize(ICON_SIZE, ICON_SIZE);
                 gridPane.add(button, c, r);
+                this.images[r][c] = image;
+            }
+        }
+        borderPane.setCenter(gridPane);
+        this.stage.sizeToScene();  // when a different sized puzzle is loaded
+    }
+
+    /**
+     * Bring the board up to date with the model. The buttons are only made
+     * again when the board changes size; otherwise just the cells whose
+     * contents changed get a new image.
+     */
+    private void refreshBoard(){
+        HoppersConfig config = model.getCurrentConfig();
+        if (config.getRows() != shown.length || (shown.length > 0 && config.getCols() != shown[0].length)){
+            makeBoard(config.getRows(), config.getCols());
+        }
+        for (int r = 0; r < shown.length; r++){
+            for (int c = 0; c < shown[r].length; c++){
+                char cell = config.getCell(r, c);
+                if (cell != shown[r][c]){
+                    shown[r][c] = cell;
+                    images[r][c].setImage(imageOf(cell));
+                }
             }
         }
+    }
 
-        return gridPane;
+    /**
+     * @param cell a cell char of the board
+     * @return the image showing it
+     */
+    private Image imageOf(char cell){
+        return switch (cell){
+            case HoppersConfig.GREEN_FROG -> greenFrog;
+            case HoppersConfig.RED_FROG -> redFrog;
+            case HoppersConfig.WATER -> water;
+            default -> lily_pad;
+        };
     }
 
     /**
-     * Update the board to a new one when the user interact with the game
+     * Update the board when the user interact with the game
      * @param hoppersModel the object that wishes to inform this object
      *                about something that has happened.
      * @param msg optional data the server.model can send to the observer
@@ -179,10 +213,14 @@ public class HoppersGUI extends Application implements Observer<HoppersModel, St
      */
     @Override
     public void update(HoppersModel hoppersModel, String msg) {
+        // hints report from their background thread
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(() -> update(hoppersModel, msg));
+            return;
+        }
         this.status.setText(msg);
         model = hoppersModel;
-        borderPane.setCenter(center());
-        this.stage.sizeToScene();  // when a different sized puzzle is loaded
+        refreshBoard();
     }
 
     /**
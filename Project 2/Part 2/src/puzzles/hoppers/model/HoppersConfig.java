@@ -1,15 +1,18 @@
 package puzzles.hoppers.model;
 
 import puzzles.common.solver.Configuration;
+import puzzles.common.solver.PackedConfiguration;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * @author nsh1507
  */
 
-public class HoppersConfig implements Configuration{
+public class HoppersConfig implements PackedConfiguration {
     /**
      * char representation of the green frog
      */
@@ -27,17 +30,202 @@ public class HoppersConfig implements Configuration{
      */
     public static final char LILY_PAD = '.';
     /**
-     * column size of the board
+     * the row and column offsets of every jump a frog can make
      */
-    private static int cols;
+    private static final int[][] JUMPS = {{-4,0},{4,0},{0,4},{0,-4},{-2,-2}, {2,2}, {-2,2}, {2,-2}};
     /**
-     * row size of the board
+     * seed for the Zobrist keys, fixed so equal boards hash the same in every load
      */
-    private static int rows;
+    private static final long ZOBRIST_SEED = 0x5DEECE66DL;
+
+    /**
+     * The parts of a board that never change while solving. One layout is
+     * shared by every configuration reached from the same file, or from
+     * any board of the same shape built cell by cell.
+     */
+    private static final class Layout {
+        /**
+         * row size of the board
+         */
+        private final int rows;
+        /**
+         * column size of the board
+         */
+        private final int cols;
+        /**
+         * number of longs needed for one bit per cell
+         */
+        private final int words;
+        /**
+         * one bit per cell, set where the cell is water
+         */
+        private final long[] water;
+        /**
+         * a random key per frog bit, XORed together to hash a board;
+         * indexed the same way as the frogs bitboard
+         */
+        private final long[] zobrist;
+        /**
+         * the reflections that leave the water in place, each mapping a cell
+         * index to its mirrored cell index; filled in once the water is known
+         */
+        private int[][] symmetries = new int[0][];
+        /**
+         * one cell mask per group of lily pads a frog can move between;
+         * a frog never leaves the group it starts in
+         */
+        private long[][] groups = new long[0][];
+        /**
+         * for each group, the mask of every group that holds a lily pad a
+         * frog can jump over a frog in that group from
+         */
+        private long[][] removers = new long[0][];
+
+        /**
+         * @param rows row size of the board
+         * @param cols column size of the board
+         */
+        private Layout(int rows, int cols) {
+            this.rows = rows;
+            this.cols = cols;
+            this.words = (rows * cols + 63) / 64;
+            this.water = new long[words];
+            this.zobrist = new long[2 * words * 64];
+            SplittableRandom random = new SplittableRandom(ZOBRIST_SEED);
+            for (int i = 0; i < zobrist.length; i++) {
+                zobrist[i] = random.nextLong();
+            }
+        }
+
+        /**
+         * Find the horizontal, vertical and combined reflections under which
+         * the water pattern is unchanged. Jumps are symmetric in both axes,
+         * so boards that are reflections of each other solve the same way.
+         */
+        private void findSymmetries() {
+            List<int[]> found = new ArrayList<>();
+            for (int flip = 1; flip <= 3; flip++) {
+                boolean horizontal = (flip & 1) != 0;
+                boolean vertical = (flip & 2) != 0;
+                int[] mapping = new int[rows * cols];
+                boolean keepsWater = true;
+                for (int r = 0; r < rows; r++) {
+                    for (int c = 0; c < cols; c++) {
+                        int index = r * cols + c;
+                        mapping[index] = (vertical ? rows - 1 - r : r) * cols + (horizontal ? cols - 1 - c : c);
+                        keepsWater &= isSet(water, index) == isSet(water, mapping[index]);
+                    }
+                }
+                if (keepsWater) {
+                    found.add(mapping);
+                }
+            }
+            this.symmetries = found.toArray(new int[0][]);
+        }
+
+        /**
+         * Split the lily pads into groups joined by the jumps between them,
+         * and note for each group which groups a frog can jump over it
+         * from. Jumps only depend on the water, so neither changes while
+         * solving.
+         */
+        private void findGroups() {
+            int cells = rows * cols;
+            int[] parent = new int[cells];
+            for (int i = 0; i < cells; i++) {
+                parent[i] = i;
+            }
+            List<int[]> jumps = new ArrayList<>();
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
+                    for (int[] jump : JUMPS) {
+                        int destRow = r + jump[0];
+                        int destCol = c + jump[1];
+                        if (destRow < 0 || destRow >= rows || destCol < 0 || destCol >= cols) {
+                            continue;
+                        }
+                        int from = r * cols + c;
+                        int over = ((r + destRow) / 2) * cols + (c + destCol) / 2;
+                        int to = destRow * cols + destCol;
+                        if (!isSet(water, from) && !isSet(water, over) && !isSet(water, to)) {
+                            jumps.add(new int[]{from, over});
+                            parent[root(parent, from)] = root(parent, to);
+                        }
+                    }
+                }
+            }
+            Map<Integer, Integer> groupOf = new HashMap<>();
+            for (int i = 0; i < cells; i++) {
+                if (!isSet(water, i)) {
+                    groupOf.putIfAbsent(root(parent, i), groupOf.size());
+                }
+            }
+            this.groups = new long[groupOf.size()][words];
+            this.removers = new long[groupOf.size()][words];
+            for (int i = 0; i < cells; i++) {
+                if (!isSet(water, i)) {
+                    set(groups[groupOf.get(root(parent, i))], i);
+                }
+            }
+            for (int[] jump : jumps) {
+                long[] from = groups[groupOf.get(root(parent, jump[0]))];
+                long[] into = removers[groupOf.get(root(parent, jump[1]))];
+                for (int w = 0; w < words; w++) {
+                    into[w] |= from[w];
+                }
+            }
+        }
+
+        /**
+         * @param parent the union-find forest
+         * @param cell a cell
+         * @return the representative of the cell's tree
+         */
+        private static int root(int[] parent, int cell) {
+            while (parent[cell] != cell) {
+                parent[cell] = parent[parent[cell]];
+                cell = parent[cell];
+            }
+            return cell;
+        }
+    }
+
+    /**
+     * The size and water of a board, as the key of a shared layout
+     * @param rows row size of the board
+     * @param cols column size of the board
+     * @param water one bit per cell, set where the cell is water
+     */
+    private record Shape(int rows, int cols, long[] water) {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Shape o && rows == o.rows && cols == o.cols && Arrays.equals(water, o.water);
+        }
+
+        @Override
+        public int hashCode() {
+            return (rows * 31 + cols) * 31 + Arrays.hashCode(water);
+        }
+    }
+
     /**
-     * the board
+     * the layouts of boards built cell by cell, shared by every such board of the same shape
      */
-    private final char[][] grid;
+    private static final Map<Shape, Layout> LAYOUTS = new ConcurrentHashMap<>();
+
+    /**
+     * the shape and water of the board
+     */
+    private final Layout layout;
+    /**
+     * the frogs, one bit per cell in row-major order; the first
+     * layout.words longs hold the green frogs, the rest the red frogs
+     */
+    private final long[] frogs;
+    /**
+     * Zobrist hash of the frogs, updated from the parent's in the copy constructor
+     */
+    private final long zobrist;
 
     /**
      * constructor that takes in a file name, parse through the input and build the map
@@ -47,16 +235,51 @@ public class HoppersConfig implements Configuration{
     public HoppersConfig(String filename) throws IOException {
         try (BufferedReader in = new BufferedReader(new FileReader(filename))) {
             String[] sizeList = in.readLine().strip().split("\\s+");
-            rows = Integer.parseInt(sizeList[0]);
-            cols = Integer.parseInt(sizeList[1]);
-            this.grid = new char[rows][cols];
-            for (int r = 0; r < rows; r++) {
+            this.layout = new Layout(Integer.parseInt(sizeList[0]), Integer.parseInt(sizeList[1]));
+            this.frogs = new long[2 * layout.words];
+            for (int r = 0; r < layout.rows; r++) {
                 String[] line = in.readLine().strip().split("\\s+");
-                for (int c = 0; c < cols; c++) {
-                    grid[r][c] = line[c].charAt(0);
+                for (int c = 0; c < layout.cols; c++) {
+                    int index = r * layout.cols + c;
+                    switch (line[c].charAt(0)) {
+                        case GREEN_FROG -> set(frogs, index);
+                        case RED_FROG -> set(frogs, layout.words * 64 + index);
+                        case WATER -> set(layout.water, index);
+                    }
                 }
             }
         }
+        layout.findSymmetries();
+        layout.findGroups();
+        this.zobrist = hashOf(layout, frogs);
+    }
+
+    /**
+     * constructor that takes the board cell by cell, such as one read from a puzzle pack, so no text is parsed.
+     * Boards of the same size and water share one layout, built the first time it is seen.
+     * @param rows row size of the board
+     * @param cols column size of the board
+     * @param cells one file char per cell in row-major order; only read, so it can be reused
+     */
+    public HoppersConfig(int rows, int cols, byte[] cells) {
+        int words = (rows * cols + 63) / 64;
+        long[] water = new long[words];
+        this.frogs = new long[2 * words];
+        for (int index = 0; index < rows * cols; index++) {
+            switch (cells[index]) {
+                case GREEN_FROG -> set(frogs, index);
+                case RED_FROG -> set(frogs, words * 64 + index);
+                case WATER -> set(water, index);
+            }
+        }
+        this.layout = LAYOUTS.computeIfAbsent(new Shape(rows, cols, water), shape -> {
+            Layout built = new Layout(rows, cols);
+            System.arraycopy(water, 0, built.water, 0, words);
+            built.findSymmetries();
+            built.findGroups();
+            return built;
+        });
+        this.zobrist = hashOf(layout, frogs);
     }
 
     /**
@@ -69,34 +292,135 @@ public class HoppersConfig implements Configuration{
      * @param destRow the destination row
      */
     public HoppersConfig(HoppersConfig other, int cursorCols, int cursorRows, int destCol, int destRow) {
-        this.grid = new char[rows][cols];
-        for (int r=0; r < rows; r++) {
-            System.arraycopy(other.grid[r], 0, this.grid[r], 0, cols);
+        this.layout = other.layout;
+        this.frogs = other.frogs.clone();
+        int cols = layout.cols;
+        int from = cursorRows * cols + cursorCols;
+        int over = ((destRow + cursorRows)/2) * cols + ((destCol + cursorCols)/2);
+        int to = destRow * cols + destCol;
+        int redOffset = layout.words * 64;
+        long[] keys = layout.zobrist;
+        long hash = other.zobrist;
+        if (isSet(frogs, redOffset + from)) {
+            clear(frogs, redOffset + from);
+            set(frogs, redOffset + to);
+            hash ^= keys[redOffset + from] ^ keys[redOffset + to];
+        } else if (isSet(frogs, from)) {
+            clear(frogs, from);
+            set(frogs, to);
+            hash ^= keys[from] ^ keys[to];
+        }
+        if (isSet(frogs, over)) {
+            clear(frogs, over);
+            hash ^= keys[over];
+        }
+        if (isSet(frogs, redOffset + over)) {
+            clear(frogs, redOffset + over);
+            hash ^= keys[redOffset + over];
         }
-        this.grid[destRow][destCol] = this.grid[cursorRows][cursorCols];
-        this.grid[((destRow + cursorRows)/2)][ ((destCol + cursorCols)/2) ] = LILY_PAD;
-        this.grid[cursorRows][cursorCols] = LILY_PAD;
+        this.zobrist = hash;
+    }
+
+    /**
+     * Constructor for a board whose frogs and hash are already known
+     * @param layout the shape and water of the board
+     * @param frogs the frog bitboard
+     * @param zobrist the Zobrist hash of the frogs
+     */
+    private HoppersConfig(Layout layout, long[] frogs, long zobrist) {
+        this.layout = layout;
+        this.frogs = frogs;
+        this.zobrist = zobrist;
+    }
+
+    /**
+     * Hash a frog bitboard from scratch
+     * @param layout the shape and water of the board
+     * @param frogs the frog bitboard
+     * @return the Zobrist hash of the frogs
+     */
+    private static long hashOf(Layout layout, long[] frogs) {
+        long hash = 0L;
+        for (int bit = 0; bit < frogs.length * 64; bit++) {
+            if (isSet(frogs, bit)) {
+                hash ^= layout.zobrist[bit];
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @return the frog bitboard; the water is shared and not included
+     */
+    @Override
+    public long[] pack() {
+        return frogs.clone();
+    }
+
+    /**
+     * @param state a frog bitboard from {@link #pack()} on a board of this layout
+     * @return the board with those frogs
+     */
+    @Override
+    public HoppersConfig unpack(long[] state) {
+        long[] copy = state.clone();
+        return new HoppersConfig(layout, copy, hashOf(layout, copy));
+    }
+
+    /**
+     * @param bits the bitboard
+     * @param index the bit to test
+     * @return whether the bit is set
+     */
+    private static boolean isSet(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * @param bits the bitboard
+     * @param index the bit to set
+     */
+    private static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * @param bits the bitboard
+     * @param index the bit to clear
+     */
+    private static void clear(long[] bits, int index) {
+        bits[index >>> 6] &= ~(1L << index);
     }
 
     /**
      * @return the column size of the board
      */
     public int getCols(){
-        return cols;
+        return layout.cols;
     }
 
     /**
      * @return the row size of the board
      */
     public int getRows(){
-        return rows;
+        return layout.rows;
     }
 
     /**
      * @return the char representation at specified position
      */
     public char getCell(int row, int col){
-        return this.grid[row][col];
+        int index = row * layout.cols + col;
+        if (isSet(frogs, index)) {
+            return GREEN_FROG;
+        }
+        if (isSet(frogs, layout.words * 64 + index)) {
+            return RED_FROG;
+        }
+        if (isSet(layout.water, index)) {
+            return WATER;
+        }
+        return LILY_PAD;
     }
 
     /**
@@ -104,52 +428,93 @@ public class HoppersConfig implements Configuration{
      */
     @Override
     public boolean isSolution() {
-        for(int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                if (this.grid[r][c] == GREEN_FROG) {
-                    return false;
-                }
+        for (int w = 0; w < layout.words; w++) {
+            if (frogs[w] != 0) {
+                return false;
             }
         }
         return true;
     }
 
+    /**
+     * Every jump removes exactly one green frog, so the green frogs left is
+     * the number of moves still needed.
+     * @return the number of green frogs on the board
+     */
+    @Override
+    public int heuristic() {
+        int greens = 0;
+        for (int w = 0; w < layout.words; w++) {
+            greens += Long.bitCount(frogs[w]);
+        }
+        return greens;
+    }
+
+    /**
+     * A green frog is only removed by another frog jumping over it, and a
+     * frog never leaves its group of lily pads. So if some group holds a
+     * green frog but no other frog is in a group that could ever jump over
+     * it, the last green frog there can never be removed.
+     * @return whether a green frog is stranded for good
+     */
+    @Override
+    public boolean isDead() {
+        int words = layout.words;
+        for (int g = 0; g < layout.groups.length; g++) {
+            long[] group = layout.groups[g];
+            long[] removers = layout.removers[g];
+            boolean hasGreen = false;
+            boolean hasRemover = false;
+            for (int w = 0; w < words; w++) {
+                long greens = frogs[w] & group[w];
+                hasGreen |= greens != 0;
+                hasRemover |= (((frogs[w] & ~greens) | frogs[words + w]) & removers[w]) != 0;
+            }
+            if (hasGreen && !hasRemover) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * @return get all the possible neighbors of the current board
      */
     @Override
     public Collection<Configuration> getNeighbors() {
-        List<Configuration> successors = new LinkedList<>();
-        for(int r = 0; r < rows; r++){
-            for (int c = 0; c < cols; c++){
-                if (this.grid[r][c] == GREEN_FROG || this.grid[r][c] == RED_FROG){
-                    successors.addAll(generateAllJump(r, c));
+        List<Configuration> successors = new ArrayList<>();
+        forEachNeighbor(successors::add);
+        return successors;
+    }
+
+    /**
+     * Hand every possible neighbor of the current board to an action, frog by frog in row-major order
+     * @param action called once with each neighbor
+     */
+    @Override
+    public void forEachNeighbor(Consumer<? super Configuration> action) {
+        for(int r = 0; r < layout.rows; r++){
+            for (int c = 0; c < layout.cols; c++){
+                char cell = getCell(r, c);
+                if (cell == GREEN_FROG || cell == RED_FROG){
+                    generateAllJump(r, c, action);
                 }
             }
         }
-        return successors;
     }
 
     /**
      * Generate all the possible locations that a frog can move are valid or not
      * @param r the current row position
      * @param c the current column position
-     * @return a list of successors of the current board
+     * @param action called once with each successor of the current board
      */
-    private Collection<Configuration> generateAllJump(int r, int c){
-        ArrayList<Configuration> neighbors = new ArrayList<>();
-        // get all the possible neighbors
-
-        int[][] coordList = {{-4,0},{4,0},{0,4},{0,-4},{-2,-2}, {2,2}, {-2,2}, {2,-2}};
-
-        for (int[] ints : coordList) {
+    private void generateAllJump(int r, int c, Consumer<? super Configuration> action){
+        for (int[] ints : JUMPS) {
             if (isValidJump(r, c, r + ints[0], c + ints[1])) {
-                HoppersConfig hoppersConfig = new HoppersConfig(this, c, r, c + ints[1], r + ints[0]);
-                neighbors.add(hoppersConfig);
+                action.accept(new HoppersConfig(this, c, r, c + ints[1], r + ints[0]));
             }
         }
-
-        return neighbors;
     }
 
     /**
@@ -162,16 +527,62 @@ public class HoppersConfig implements Configuration{
      */
     private boolean isValidJump(int r, int c, int destRow, int destCol){
         //check if capture is valid
-        if (destCol < 0 || destCol >= cols || destRow < 0 || destRow >= rows) {
+        if (destCol < 0 || destCol >= layout.cols || destRow < 0 || destRow >= layout.rows) {
             return false;
         }
-        if (grid[((destRow + r)/2)][ ((destCol + c)/2) ] != GREEN_FROG){
+        if (getCell((destRow + r)/2, (destCol + c)/2) != GREEN_FROG){
             return false;
         }
-        if (grid[destRow][destCol] == WATER){
-            return false;
+        return getCell(destRow, destCol) == LILY_PAD;
+    }
+
+    /**
+     * Of this board and its reflections that keep the water in place, the
+     * one with the smallest hash stands in for all of them.
+     * @return the chosen reflection, or this board if it is the smallest
+     */
+    @Override
+    public Object canonicalKey() {
+        int[] best = null;
+        long bestHash = this.zobrist;
+        for (int[] symmetry : layout.symmetries) {
+            long hash = reflect(symmetry, null);
+            if (hash < bestHash) {
+                best = symmetry;
+                bestHash = hash;
+            }
+        }
+        if (best == null) {
+            return this;
+        }
+        long[] reflected = new long[frogs.length];
+        reflect(best, reflected);
+        return new HoppersConfig(layout, reflected, bestHash);
+    }
+
+    /**
+     * Move every frog to its reflected cell
+     * @param symmetry maps each cell index to its reflected index
+     * @param into the bitboard to write the reflected frogs to, or null to only hash them
+     * @return the Zobrist hash of the reflected frogs
+     */
+    private long reflect(int[] symmetry, long[] into) {
+        int redOffset = layout.words * 64;
+        long hash = 0L;
+        for (int w = 0; w < frogs.length; w++) {
+            long bits = frogs[w];
+            while (bits != 0) {
+                int bit = w * 64 + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                int offset = bit < redOffset ? 0 : redOffset;
+                int mirrored = offset + symmetry[bit - offset];
+                hash ^= layout.zobrist[mirrored];
+                if (into != null) {
+                    set(into, mirrored);
+                }
+            }
         }
-        return grid[destRow][destCol] == LILY_PAD;
+        return hash;
     }
 
     /**
@@ -181,9 +592,9 @@ public class HoppersConfig implements Configuration{
     public String toString(){
         StringBuilder result = new StringBuilder();
         result.append(System.lineSeparator());
-        for (int r = 0; r < rows; r++){
-            for (int c = 0; c < cols; c++){
-                result.append(grid[r][c]).append(" ");
+        for (int r = 0; r < layout.rows; r++){
+            for (int c = 0; c < layout.cols; c++){
+                result.append(getCell(r, c)).append(" ");
             }
             result.append(System.lineSeparator());
         }
@@ -195,7 +606,7 @@ public class HoppersConfig implements Configuration{
      */
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(this.grid);
+        return Long.hashCode(this.zobrist);
     }
 
     /**
@@ -204,14 +615,12 @@ public class HoppersConfig implements Configuration{
     @Override
     public boolean equals(Object other) {
         if (other instanceof HoppersConfig o){
-            for (int r = 0; r < rows; r++){
-                for (int c = 0; c < cols; c++){
-                    if (o.grid[r][c] != this.grid[r][c]){
-                        return false;
-                    }
-                }
-            }
+            return this.zobrist == o.zobrist
+                    && this.layout.rows == o.layout.rows
+                    && this.layout.cols == o.layout.cols
+                    && Arrays.equals(this.frogs, o.frogs)
+                    && Arrays.equals(this.layout.water, o.layout.water);
         }
-        return true;
+        return false;
     }
 }
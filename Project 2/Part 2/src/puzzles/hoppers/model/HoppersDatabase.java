@@ -0,0 +1,303 @@
+package puzzles.hoppers.model;
+
+import puzzles.common.solver.Configuration;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Precomputed moves-to-solve for every arrangement of frogs on one water
+ * layout, so whether a board can be solved and which jump to make next
+ * are answered by a table lookup instead of a search.
+ * <p>
+ * Each lily pad is empty, green or red, so a board is numbered by reading
+ * its lily pads, in row-major order, as the digits of a base 3 number.
+ * The table holds one byte per number: the jumps left to a solution, or
+ * {@link #UNSOLVABLE}. Every jump removes exactly one green frog, so a
+ * solvable board always needs as many jumps as it has green frogs, and a
+ * board's entry follows from the entries of the boards one jump on, which
+ * have one green frog fewer. The table is filled in that order, back from
+ * the solved boards.
+ * <p>
+ * File layout: the magic number and version, rows and columns, the number
+ * of lily pads followed by each lily pad's cell index, then the table.
+ * The table is read through a memory mapping.
+ *
+ * @author Nam Huynh
+ */
+
+public class HoppersDatabase {
+    /**
+     * table entry of a board with no solution
+     */
+    public static final int UNSOLVABLE = -1;
+    /**
+     * first int of every database file, "HOPD"
+     */
+    private static final int MAGIC = 0x484F5044;
+    private static final int VERSION = 1;
+    /**
+     * most lily pads a table can cover; 3^19 entries still fit one mapping
+     */
+    private static final int MAX_PADS = 19;
+    /**
+     * table entry of a board not worked out yet, only used while building
+     */
+    private static final byte UNKNOWN = -2;
+    /**
+     * the row and column offsets of every jump, the same as in HoppersConfig
+     */
+    private static final int[][] JUMPS = {{-4,0},{4,0},{0,4},{0,-4},{-2,-2}, {2,2}, {-2,2}, {2,-2}};
+
+    /**
+     * row size of the layout
+     */
+    private final int rows;
+    /**
+     * column size of the layout
+     */
+    private final int cols;
+    /**
+     * cell index of each lily pad, in digit order
+     */
+    private final int[] pads;
+    /**
+     * the moves-to-solve table
+     */
+    private final MappedByteBuffer table;
+
+    /**
+     * @param rows row size of the layout
+     * @param cols column size of the layout
+     * @param pads cell index of each lily pad
+     * @param table the moves-to-solve table
+     */
+    private HoppersDatabase(int rows, int cols, int[] pads, MappedByteBuffer table) {
+        this.rows = rows;
+        this.cols = cols;
+        this.pads = pads;
+        this.table = table;
+    }
+
+    /**
+     * @param board any board
+     * @return cell index of each cell that is not water, in row-major order
+     */
+    private static int[] padsOf(HoppersConfig board) {
+        List<Integer> pads = new ArrayList<>();
+        for (int r = 0; r < board.getRows(); r++) {
+            for (int c = 0; c < board.getCols(); c++) {
+                if (board.getCell(r, c) != HoppersConfig.WATER) {
+                    pads.add(r * board.getCols() + c);
+                }
+            }
+        }
+        return pads.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Work out the table for the water layout of a board and write it to a file
+     * @param layout any board with the water layout to cover; its frogs do not matter
+     * @param file where to write the database
+     * @throws IOException if the layout has too many lily pads or the file cannot be written
+     */
+    public static void build(HoppersConfig layout, Path file) throws IOException {
+        int rows = layout.getRows();
+        int cols = layout.getCols();
+        int[] pads = padsOf(layout);
+        if (pads.length > MAX_PADS) {
+            throw new IOException("Too many lily pads for a database: " + pads.length);
+        }
+        int[] digitOf = new int[rows * cols];
+        Arrays.fill(digitOf, -1);
+        for (int i = 0; i < pads.length; i++) {
+            digitOf[pads[i]] = i;
+        }
+        // every jump as the digits of the frog, the green frog it jumps over and where it lands
+        List<int[]> jumps = new ArrayList<>();
+        for (int pad : pads) {
+            int r = pad / cols;
+            int c = pad % cols;
+            for (int[] jump : JUMPS) {
+                int destRow = r + jump[0];
+                int destCol = c + jump[1];
+                if (destRow < 0 || destRow >= rows || destCol < 0 || destCol >= cols) {
+                    continue;
+                }
+                int over = digitOf[((r + destRow) / 2) * cols + (c + destCol) / 2];
+                int to = digitOf[destRow * cols + destCol];
+                if (over >= 0 && to >= 0) {
+                    jumps.add(new int[]{digitOf[pad], over, to});
+                }
+            }
+        }
+        int[] powers = new int[pads.length + 1];
+        powers[0] = 1;
+        for (int i = 1; i <= pads.length; i++) {
+            powers[i] = powers[i - 1] * 3;
+        }
+
+        byte[] distances = new byte[powers[pads.length]];
+        Arrays.fill(distances, UNKNOWN);
+        int[] digits = new int[pads.length];
+        for (int board = 0; board < distances.length; board++) {
+            solve(board, distances, digits, jumps, powers);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rows);
+            out.writeInt(cols);
+            out.writeInt(pads.length);
+            for (int pad : pads) {
+                out.writeInt(pad);
+            }
+            out.write(distances);
+        }
+    }
+
+    /**
+     * Fill in the table entry of a board, and of every board it can jump
+     * to first. Each jump removes a green frog, so the recursion is no
+     * deeper than the number of lily pads.
+     * @param board the board's number
+     * @param distances the table being built
+     * @param digits scratch space for decoding the board
+     * @param jumps every jump as digit positions: frog, green frog jumped, landing
+     * @param powers powers of 3
+     * @return the board's table entry
+     */
+    private static byte solve(int board, byte[] distances, int[] digits, List<int[]> jumps, int[] powers) {
+        if (distances[board] != UNKNOWN) {
+            return distances[board];
+        }
+        int greens = 0;
+        int rest = board;
+        for (int i = 0; i < digits.length; i++) {
+            digits[i] = rest % 3;
+            rest /= 3;
+            if (digits[i] == 1) {
+                greens += 1;
+            }
+        }
+        byte result = greens == 0 ? 0 : (byte) UNSOLVABLE;
+        if (greens > 0) {
+            // the recursion below overwrites the digits, so collect the successors first
+            List<Integer> successors = new ArrayList<>();
+            for (int[] jump : jumps) {
+                int frog = digits[jump[0]];
+                if (frog != 0 && digits[jump[1]] == 1 && digits[jump[2]] == 0) {
+                    successors.add(board - frog * powers[jump[0]] - powers[jump[1]] + frog * powers[jump[2]]);
+                }
+            }
+            for (int successor : successors) {
+                if (solve(successor, distances, digits, jumps, powers) != UNSOLVABLE) {
+                    result = (byte) greens;
+                    break;
+                }
+            }
+        }
+        distances[board] = result;
+        return result;
+    }
+
+    /**
+     * Open a database file
+     * @param file the database
+     * @return the database, with its table mapped into memory
+     * @throws IOException if the file cannot be read or is not a database
+     */
+    public static HoppersDatabase open(Path file) throws IOException {
+        int rows;
+        int cols;
+        int[] pads;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a Hoppers database: " + file);
+            }
+            rows = in.readInt();
+            cols = in.readInt();
+            pads = new int[in.readInt()];
+            if (pads.length > MAX_PADS) {
+                throw new IOException("Corrupt Hoppers database: " + file);
+            }
+            for (int i = 0; i < pads.length; i++) {
+                pads[i] = in.readInt();
+            }
+        }
+        long offset = 4L * (5 + pads.length);
+        long size = 1;
+        for (int i = 0; i < pads.length; i++) {
+            size *= 3;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() != offset + size) {
+                throw new IOException("Truncated Hoppers database: " + file);
+            }
+            // the mapping stays valid after the channel is closed
+            return new HoppersDatabase(rows, cols, pads, channel.map(FileChannel.MapMode.READ_ONLY, offset, size));
+        }
+    }
+
+    /**
+     * @param board any board
+     * @return whether the board has the water layout this database was built for
+     */
+    public boolean covers(HoppersConfig board) {
+        return board.getRows() == rows && board.getCols() == cols && Arrays.equals(padsOf(board), pads);
+    }
+
+    /**
+     * @param board a board this database covers
+     * @return the board's number
+     */
+    private int indexOf(HoppersConfig board) {
+        int index = 0;
+        for (int i = pads.length - 1; i >= 0; i--) {
+            char cell = board.getCell(pads[i] / cols, pads[i] % cols);
+            index = index * 3 + (cell == HoppersConfig.GREEN_FROG ? 1 : cell == HoppersConfig.RED_FROG ? 2 : 0);
+        }
+        return index;
+    }
+
+    /**
+     * @param board a board this database covers
+     * @return the number of jumps to a solution, or UNSOLVABLE
+     */
+    public int distance(HoppersConfig board) {
+        return table.get(indexOf(board));
+    }
+
+    /**
+     * @param board a board this database covers
+     * @return whether the board can be solved
+     */
+    public boolean isSolvable(HoppersConfig board) {
+        return distance(board) != UNSOLVABLE;
+    }
+
+    /**
+     * @param board a board this database covers
+     * @return a jump that keeps the board solvable, or null if it is
+     * already solved or cannot be solved
+     */
+    public HoppersConfig bestMove(HoppersConfig board) {
+        if (distance(board) <= 0) {
+            return null;
+        }
+        for (Configuration neighbor : board.getNeighbors()) {
+            if (isSolvable((HoppersConfig) neighbor)) {
+                return (HoppersConfig) neighbor;
+            }
+        }
+        return null;
+    }
+}
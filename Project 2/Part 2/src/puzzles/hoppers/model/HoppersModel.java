@@ -2,22 +2,59 @@ package puzzles.hoppers.model;
 
 import puzzles.common.Observer;
 import puzzles.common.solver.Configuration;
+import puzzles.common.solver.SolutionCache;
 import puzzles.common.solver.Solver;
 
 import java.io.IOException;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * @author nsh1507
  */
 
 public class HoppersModel {
-    /** the collection of observers of this model */
-    private final List<Observer<HoppersModel, String>> observers = new LinkedList<>();
+    /** the least time in milliseconds between two progress messages of a hint */
+    private static final long PROGRESS_INTERVAL = 250;
+    /** bytes of solved paths remembered when no budget is given */
+    public static final long DEFAULT_CACHE_BYTES = 8L << 20;
+    /** rough size of one configuration, for the solution cache budget */
+    private static final int CONFIG_BYTES = 128;
+    /**
+     * runs hint solves one at a time off the UI thread, so a cancelled
+     * solve has stopped before the next one starts
+     */
+    private static final ExecutorService HINTS = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hoppers-hint");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** the collection of observers of this model, alerted from the hint thread too */
+    private final List<Observer<HoppersModel, String>> observers = new CopyOnWriteArrayList<>();
 
     /** the current configuration */
-    private HoppersConfig currentConfig;
+    private volatile HoppersConfig currentConfig;
+    /**
+     * the solver of the hint in progress, or null
+     */
+    private Solver hintSolver;
+    /**
+     * the hint in progress, or null
+     */
+    private CompletableFuture<Void> pendingHint;
+    /**
+     * solved paths, so following a hint never solves again
+     */
+    private final SolutionCache solutions;
+    /**
+     * precomputed answers for one water layout, or null
+     */
+    private HoppersDatabase database;
     /**
      * the current filename
      */
@@ -60,6 +97,18 @@ public class HoppersModel {
      * @throws IOException if the file is found or not
      */
     public HoppersModel(String filename) throws IOException {
+        this(filename, DEFAULT_CACHE_BYTES);
+    }
+
+    /**
+     * Constructor that takes in a filename and how much memory hints may keep,
+     * generate the new board and display the status
+     * @param filename the filename to parse
+     * @param cacheBytes the most bytes of solved paths to remember
+     * @throws IOException if the file is found or not
+     */
+    public HoppersModel(String filename, long cacheBytes) throws IOException {
+        solutions = new SolutionCache(cacheBytes, CONFIG_BYTES);
         currentConfig = new HoppersConfig(filename);
         this.currentFile = filename;
         String[] nameList = filename.split("/");
@@ -72,10 +121,11 @@ public class HoppersModel {
      * @param filename the filename to load the new board
      */
     public void load(String filename) {
+        cancelHint();
         HoppersConfig tempConfig = currentConfig;
         String[] nameList = filename.split("/");
         try{
-            currentConfig = new HoppersConfig(filename);
+            setConfig(new HoppersConfig(filename));
             String loaded = "Loaded: " + nameList[2];
             currentFile = filename;
             this.alertObservers(loaded);
@@ -83,23 +133,57 @@ public class HoppersModel {
         }
         catch (IOException ioException){
             String failed = "Failed to load: " + filename;
-            currentConfig = tempConfig;
+            setConfig(tempConfig);
             this.alertObservers(failed);
             }
     }
 
     /**
-     * Get the hint of the current board
+     * Replace the current configuration
+     * @param config the new configuration
+     */
+    private synchronized void setConfig(HoppersConfig config){
+        currentConfig = config;
+    }
+
+    /**
+     * Apply a hint, unless the board changed while it was being solved
+     * @param from the configuration the hint was solved for
+     * @param to the next step
+     * @return whether the hint was applied
+     */
+    private synchronized boolean advance(HoppersConfig from, HoppersConfig to){
+        if (currentConfig != from){
+            return false;
+        }
+        currentConfig = to;
+        return true;
+    }
+
+    /**
+     * Stop the hint in progress, if any. Its observers hear nothing more from it.
      */
-    public void hint(){
-        Solver solver = new Solver();
-        List<Configuration> path = solver.solve(currentConfig);
+    public void cancelHint(){
+        if (hintSolver != null){
+            hintSolver.cancel();
+            pendingHint.cancel(false);
+            hintSolver = null;
+            pendingHint = null;
+        }
+    }
+
+    /**
+     * Move to the next step of a path and tell the observers, unless the
+     * board changed since the path was found
+     * @param start the configuration the path starts from
+     * @param path the shortest path, empty if there is none
+     */
+    private void showHint(HoppersConfig start, List<Configuration> path){
         if (path.size() != 0){
             if (path.size() == 1){
                 this.alertObservers("Already solved!");
             }
-            else {
-                currentConfig = (HoppersConfig) path.get(1);
+            else if (advance(start, (HoppersConfig) path.get(1))){
                 this.alertObservers("Next step!");
             }
         }
@@ -108,6 +192,78 @@ public class HoppersModel {
         }
     }
 
+    /**
+     * Answer hints from a precomputed database whenever the board has the
+     * layout it covers
+     * @param database the database, or null to always search
+     */
+    public void setDatabase(HoppersDatabase database){
+        this.database = database;
+    }
+
+    /**
+     * Whether the current board can be solved. Answered from the database
+     * or the solution cache when possible, otherwise by solving on the
+     * calling thread.
+     * @return whether the current board can be solved
+     */
+    public boolean isSolvable(){
+        HoppersConfig board = currentConfig;
+        if (database != null && database.covers(board)){
+            return database.isSolvable(board);
+        }
+        List<Configuration> known = solutions.lookup(board);
+        if (known == null){
+            known = new Solver().solve(board);
+            solutions.put(board, known);
+        }
+        return !known.isEmpty();
+    }
+
+    /**
+     * Move to the next step of the solution. A board with the layout of
+     * the database is answered from it, and a board on a path solved
+     * before from the solution cache, both at once. Otherwise the
+     * board is solved on a background thread. Observers are told "Solving..." with the number
+     * of configurations seen while a long solve runs, and the outcome once
+     * it finishes; both from the background thread. Any hint still in
+     * progress is cancelled first, and so is this one if the board is moved,
+     * loaded or reset before it finishes.
+     * @return completes once observers have been told the outcome
+     */
+    public CompletableFuture<Void> hint(){
+        cancelHint();
+        HoppersConfig start = currentConfig;
+        if (database != null && database.covers(start)){
+            HoppersConfig next = database.bestMove(start);
+            showHint(start, next != null ? List.of(start, next)
+                    : database.isSolvable(start) ? List.of(start) : List.of());
+            return CompletableFuture.completedFuture(null);
+        }
+        List<Configuration> known = solutions.lookup(start);
+        if (known != null){
+            showHint(start, known);
+            return CompletableFuture.completedFuture(null);
+        }
+        Solver solver = new Solver(ForkJoinPool.commonPool());
+        long[] lastProgress = {System.currentTimeMillis()};
+        solver.setProgress(unique -> {
+            long now = System.currentTimeMillis();
+            if (now - lastProgress[0] >= PROGRESS_INTERVAL){
+                lastProgress[0] = now;
+                this.alertObservers("Solving... " + unique + " configurations");
+            }
+        });
+        CompletableFuture<Void> hint = CompletableFuture.supplyAsync(() -> solver.solve(start), HINTS)
+                .thenAccept(path -> {
+                    solutions.put(start, path);
+                    showHint(start, path);
+                });
+        hintSolver = solver;
+        pendingHint = hint;
+        return hint;
+    }
+
     /**
      * reset the current board
      */
@@ -123,6 +279,7 @@ public class HoppersModel {
      * @param col the initial column
      */
     public void select(int row, int col){
+        cancelHint();
         if (firstSelect){
             if (this.isValidSelect(row,col)){
                 firstRow = row;
@@ -146,7 +303,8 @@ public class HoppersModel {
      * @param destCol the destination of the column
      */
     public void jump(int initialRow, int initialCol, int destRow, int destCol ){
-        currentConfig = new HoppersConfig(currentConfig, initialCol, initialRow, destCol, destRow);
+        cancelHint();
+        setConfig(new HoppersConfig(currentConfig, initialCol, initialRow, destCol, destRow));
         this.alertObservers("Jumped from (" + initialRow + ", " + initialCol + ")  to (" + destCol + ", " + destRow + ")");
     }
 
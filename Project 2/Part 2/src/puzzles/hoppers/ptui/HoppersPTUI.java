@@ -1,10 +1,12 @@
 package puzzles.hoppers.ptui;
 
 import puzzles.common.Observer;
+import puzzles.hoppers.model.HoppersDatabase;
 import puzzles.hoppers.model.HoppersModel;
 
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Scanner;
 
 /**
@@ -68,7 +70,7 @@ public class HoppersPTUI implements Observer<HoppersModel, String> {
                     break;
                 }
                 else if (words[0].startsWith( "h" )) {
-                    model.hint();
+                    model.hint().join();
                 }
                 else if (words[0].startsWith( "s" )) {
                     model.select(Integer.parseInt(words[1]), Integer.parseInt(words[2]));
@@ -88,15 +90,18 @@ public class HoppersPTUI implements Observer<HoppersModel, String> {
 
     /**
      * Constructor that takes in the file name and run the game
-     * @param args the filename
+     * @param args the filename, optionally followed by a database built by HoppersDatabaseBuilder
      */
     public static void main(String[] args) {
-        if (args.length != 1) {
-            System.out.println("Usage: java HoppersPTUI filename");
+        if (args.length != 1 && args.length != 2) {
+            System.out.println("Usage: java HoppersPTUI filename [database]");
         } else {
             try {
                 HoppersPTUI ptui = new HoppersPTUI();
                 ptui.init(args[0]);
+                if (args.length == 2) {
+                    ptui.model.setDatabase(HoppersDatabase.open(Path.of(args[1])));
+                }
                 ptui.run();
             } catch (IOException ioe) {
                 System.out.println(ioe.getMessage());
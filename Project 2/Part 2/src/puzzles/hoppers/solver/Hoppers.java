@@ -1,6 +1,7 @@
 package puzzles.hoppers.solver;
 
 import puzzles.common.solver.Configuration;
+import puzzles.common.solver.IDAStarSolver;
 import puzzles.common.solver.Solver;
 import puzzles.hoppers.model.HoppersConfig;
 
@@ -14,20 +15,28 @@ import java.util.Collection;
 public class Hoppers {
     /**
      * Takes in a file name and generate the solution of the puzzle with the shortest path
-     * @param args the filename
+     * @param args the filename, optionally followed by the solver: bfs, ida or ida-tt
      */
     public static void main(String[] args) {
-        if (args.length != 1) {
-            System.out.println("Usage: java Hoppers filename");
+        if (args.length < 1) {
+            System.out.println("Usage: java Hoppers filename [bfs|ida|ida-tt]");
+            return;
         }
         try {
             HoppersConfig hoppersConfig = new HoppersConfig(args[0]);
             System.out.println("File: " + args[0]);
             System.out.println(hoppersConfig);
-            Solver solver = new Solver();
             int step = 0;
-            Collection<Configuration> path = solver.solve(hoppersConfig);
-            solver.configsPrint();
+            Collection<Configuration> path;
+            if (args.length > 1 && args[1].startsWith("ida")){
+                IDAStarSolver solver = new IDAStarSolver(args[1].equals("ida-tt") ? IDAStarSolver.TABLE_SIZE : 0);
+                path = solver.solve(hoppersConfig);
+                solver.configsPrint();
+            } else {
+                Solver solver = new Solver();
+                path = solver.solve(hoppersConfig);
+                solver.configsPrint();
+            }
             if (path.size() == 0){
                 System.out.println("No solution");
                 return;
@@ -0,0 +1,32 @@
+package puzzles.hoppers.solver;
+
+import puzzles.hoppers.model.HoppersConfig;
+import puzzles.hoppers.model.HoppersDatabase;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * @author Nam Huynh
+ */
+
+public class HoppersDatabaseBuilder {
+    /**
+     * Build the moves-to-solve database for the water layout of a board file
+     * @param args the board file and the database file to write
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: java HoppersDatabaseBuilder filename database");
+            return;
+        }
+        try {
+            HoppersConfig layout = new HoppersConfig(args[0]);
+            long begin = System.nanoTime();
+            HoppersDatabase.build(layout, Path.of(args[1]));
+            System.out.printf("Wrote %s in %.1f s%n", args[1], (System.nanoTime() - begin) / 1e9);
+        } catch (IOException ioe) {
+            System.out.println(ioe.getMessage());
+        }
+    }
+}
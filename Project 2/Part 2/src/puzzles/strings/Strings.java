@@ -1,26 +1,41 @@
 package puzzles.strings;
 
 import puzzles.common.solver.Configuration;
+import puzzles.common.solver.IDAStarSolver;
+import puzzles.common.solver.ReversibleConfiguration;
 import puzzles.common.solver.Solver;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.function.Consumer;
 
 public class Strings {
     public static void main(String[] args) {
         if (args.length < 2) {
-            System.out.println(("Usage: java Strings start finish"));
+            System.out.println(("Usage: java Strings start finish [bfs|ida|ida-tt]"));
         } else {
             StringsConfig stringsConfig = new StringsConfig(args[0], args[1]);
             System.out.println("Start: " + args[0] + ", End: " + args[1]);
-            Solver solver = new Solver();
-            Collection<Configuration> path = solver.solve(stringsConfig);
+            Collection<Configuration> path;
+            if (args.length > 2 && args[2].startsWith("ida")){
+                IDAStarSolver solver = new IDAStarSolver(args[2].equals("ida-tt") ? IDAStarSolver.TABLE_SIZE : 0);
+                path = solver.solve(stringsConfig);
+                solver.configsPrint();
+            } else {
+                Solver solver = new Solver();
+                // stepping backwards is only exact while every character stays in A-Z
+                path = isUppercase(args[0]) && isUppercase(args[1])
+                        ? solver.solveBidirectional(stringsConfig)
+                        : solver.solve(stringsConfig);
+                solver.configsPrint();
+            }
             int step = 0;
             if (path.size() == 0){
                 System.out.println("No solution");
                 return;
             }
-            solver.configsPrint();
             for (Configuration configuration: path){
                 System.out.println("Steps " + step + ": " + configuration);
                 step +=1 ;
@@ -28,13 +43,35 @@ public class Strings {
         }
     }
 
-    public static class StringsConfig implements Configuration {
-        /** the starting string*/
-        private final String start;
-        /** the desired string*/
-        private final String finish;
-        /** the list of possible configurations of the starting string*/
-        private final Collection<Configuration> neighbors;
+    /**
+     * @param word the word to check
+     * @return whether every character of the word is an uppercase letter
+     */
+    private static boolean isUppercase(String word){
+        for (int i = 0; i < word.length(); i++){
+            if (word.charAt(i) < 'A' || word.charAt(i) > 'Z'){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * One string on the way to the desired one. A small value type: the
+     * letters in a char array, the desired letters shared with every other
+     * configuration of the same puzzle, a hash worked out once, and the
+     * neighbors built the first time they are asked for and then handed
+     * back on every later call.
+     */
+    public static class StringsConfig implements ReversibleConfiguration {
+        /** the letters of the current string, never changed*/
+        private final char[] letters;
+        /** the letters of the desired string, shared and never changed*/
+        private final char[] goal;
+        /** the hash code, worked out once by the constructor*/
+        private final int hash;
+        /** the neighbors, null until getNeighbors is first called*/
+        private List<Configuration> neighbors;
 
         /**
          * The constructor that initialize the starting and desired string.
@@ -42,9 +79,17 @@ public class Strings {
          * @param finish the desired string
          */
         public StringsConfig(String start, String finish){
-            this.start = start;
-            this.finish = finish;
-            this.neighbors = new LinkedList<>();
+            this(start.toCharArray(), finish.toCharArray());
+        }
+
+        /**
+         * @param letters the letters of the current string, owned by the new configuration
+         * @param goal the letters of the desired string
+         */
+        private StringsConfig(char[] letters, char[] goal){
+            this.letters = letters;
+            this.goal = goal;
+            this.hash = Arrays.hashCode(letters);
         }
 
         /**
@@ -52,42 +97,146 @@ public class Strings {
          */
         @Override
         public boolean isSolution() {
-            return this.start.equals(this.finish);
+            return Arrays.equals(this.letters, this.goal);
+        }
+
+        /**
+         * @param i the position of the letter to change
+         * @param letter the new letter
+         * @return the configuration with one letter changed
+         */
+        private StringsConfig change(int i, char letter){
+            char[] changed = this.letters.clone();
+            changed[i] = letter;
+            return new StringsConfig(changed, this.goal);
+        }
+
+        /**
+         * Make every neighbor: each letter lowered or raised by one, wrapping
+         * around the alphabet, as long as that step heads towards the desired letter.
+         * @param action called once with each neighbor
+         */
+        private void generate(Consumer<? super Configuration> action){
+            for (int i = 0; i < letters.length; i++){
+                char lesser = lower(letters[i]);
+                char greater = raise(letters[i]);
+                if (Math.abs(lesser - goal[i]) <= 13 || lesser == 65){
+                    action.accept(change(i, lesser));
+                }
+                if (Math.abs(greater - goal[i]) <= 13 || greater == 90){
+                    action.accept(change(i, greater));
+                }
+            }
         }
 
         /**
-         * @return generate and return a list of neighbors of the current configuration.
+         * The list is built on the first call and the same one is returned
+         * on every later call.
+         * @return the unmodifiable list of neighbors of the current configuration.
          */
         @Override
         public Collection<Configuration> getNeighbors() {
-            char[] charArray = start.toCharArray();
-            char[] endArray = finish.toCharArray();
-            for (int i = 0; i < charArray.length; i++){
-                int greater = (int) charArray[i] + 1;
-                if (greater > 90){
-                    greater = 65;
-                }
-                char chGreater = (char) greater;
-                String letterGreater = String.valueOf(chGreater);
-                String stringGreater = start.substring(0,i) + letterGreater + start.substring(i+1);
+            if (this.neighbors == null){
+                List<Configuration> built = new ArrayList<>(2 * letters.length);
+                generate(built::add);
+                // List.copyOf only has final fields, so the list is safe to share between threads
+                this.neighbors = List.copyOf(built);
+            }
+            return this.neighbors;
+        }
+
+        /**
+         * Hand every neighbor of the current configuration to an action, in
+         * the same order as getNeighbors. Uses the neighbors from
+         * getNeighbors if they were already built; otherwise makes them
+         * without keeping them, since a solver expands each configuration
+         * once and keeping them would pin every duplicate.
+         * @param action called once with each neighbor
+         */
+        @Override
+        public void forEachNeighbor(Consumer<? super Configuration> action) {
+            List<Configuration> built = this.neighbors;
+            if (built != null){
+                built.forEach(action);
+                return;
+            }
+            generate(action);
+        }
 
-                int lesser = (int) charArray[i] - 1;
-                if (lesser < 65){
-                    lesser = 90;
+        /**
+         * Every string that getNeighbors would turn into this one. A letter
+         * can only have come from the letter just below it (raised) or just
+         * above it (lowered), and only if that step was allowed towards the
+         * desired string.
+         * @return generate and return a list of predecessors of the current configuration.
+         */
+        @Override
+        public Collection<Configuration> getPredecessors() {
+            List<Configuration> predecessors = new ArrayList<>();
+            for (int i = 0; i < letters.length; i++){
+                char letter = letters[i];
+                boolean allowed = Math.abs(letter - goal[i]) <= 13;
+                char below = lower(letter);
+                if (raise(below) == letter && (allowed || letter == 90)){
+                    predecessors.add(change(i, below));
                 }
-                char chLesser = (char) lesser;
-                String letterLesser = String.valueOf(chLesser);
-                String stringLesser = start.substring(0,i) + letterLesser + start.substring(i+1);
-                int absLesser = Math.abs(chLesser - endArray[i]);
-                int absGreater = Math.abs(chGreater - endArray[i]);
-                if (absLesser <= 13 || lesser == 65){
-                    this.neighbors.add(new StringsConfig(stringLesser, finish));
+                char above = raise(letter);
+                if (lower(above) == letter && (allowed || letter == 65)){
+                    predecessors.add(change(i, above));
                 }
-                if (absGreater <= 13 || greater == 90) {
-                    this.neighbors.add(new StringsConfig(stringGreater, finish));
+            }
+            return predecessors;
+        }
+
+        /**
+         * @return the configuration that has reached the desired string
+         */
+        @Override
+        public ReversibleConfiguration getGoal() {
+            return new StringsConfig(goal, goal);
+        }
+
+        /**
+         * Each move changes one letter by one step around the alphabet, so the
+         * circular distance of every letter from its target is a lower bound.
+         * @return the sum of the per-letter circular distances
+         */
+        @Override
+        public int heuristic() {
+            int total = 0;
+            for (int i = 0; i < letters.length; i++){
+                char letter = letters[i];
+                char target = goal[i];
+                if (letter >= 'A' && letter <= 'Z' && target >= 'A' && target <= 'Z'){
+                    int distance = Math.abs(letter - target);
+                    total += Math.min(distance, 26 - distance);
                 }
             }
-            return this.neighbors;
+            return total;
+        }
+
+        /**
+         * @param letter the letter to raise
+         * @return the next letter, wrapping Z around to A
+         */
+        private static char raise(char letter){
+            int greater = letter + 1;
+            if (greater > 90){
+                greater = 65;
+            }
+            return (char) greater;
+        }
+
+        /**
+         * @param letter the letter to lower
+         * @return the previous letter, wrapping A around to Z
+         */
+        private static char lower(char letter){
+            int lesser = letter - 1;
+            if (lesser < 65){
+                lesser = 90;
+            }
+            return (char) lesser;
         }
 
         /**
@@ -97,7 +246,8 @@ public class Strings {
         @Override
         public boolean equals(Object other) {
             if (other instanceof StringsConfig o){
-                return this.start.equals(o.start) && this.finish.equals(o.finish);
+                return this.hash == o.hash && Arrays.equals(this.letters, o.letters)
+                        && (this.goal == o.goal || Arrays.equals(this.goal, o.goal));
             }
             return false;
         }
@@ -107,7 +257,7 @@ public class Strings {
          */
         @Override
         public int hashCode() {
-            return this.start.hashCode() + this.finish.hashCode();
+            return this.hash;
         }
 
         /**
@@ -115,7 +265,7 @@ public class Strings {
          */
         @Override
         public String toString() {
-            return String.valueOf(this.start);
+            return String.valueOf(this.letters);
         }
     }
 }